@@ -0,0 +1,131 @@
+/*Breaks an AffineTransformation ciphertext automatically by trying every
+valid key. There are only 12 scalars with inverses mod 26 and 26 shifts, so
+312 keys in all. Each key is scored with FrequencyAnalysis.chiSquared: the
+ciphertext's letter counts are made ONCE (one 26 bin histogram), and since
+an affine key just moves letters around, the counts of a key's plaintext are
+the same numbers read in a different order. So scoring a key is 26 steps no
+matter how long the message is, and nothing gets deciphered until the end.
+
+The keys are split between threads with fork-join, and the best k keys
+(smallest chi-squared, ie most English looking) are returned in order.*/
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class AffineKeySearch{
+
+  private static final int MOD = 26;
+  //the scalars that have inverses mod 26 (odd, not 13)
+  private static final int[] SCALARS = {1, 3, 5, 7, 9, 11, 15, 17, 19, 21, 23, 25};
+  //a fork-join task handles at most this many keys itself before splitting
+  private static final int KEYS_PER_TASK = 26;
+
+  /*one candidate key and its score. The scalar and shift are the ENCIPHER
+  key, ie what the message was enciphered with*/
+  public static class Result{
+    private final int scalar, shift;
+    private final double score;
+
+    Result(int myScalar, int myShift, double myScore){
+      scalar = myScalar;
+      shift = myShift;
+      score = myScore;
+    }
+
+    public int getScalar(){return scalar;}
+    public int getShift(){return shift;}
+    //chi-squared against English; smaller is better
+    public double getScore(){return score;}
+
+    //deciphers the given ciphertext with this key
+    public String decipher(String cipherText){
+      AffineTransformation at = new AffineTransformation(cipherText, scalar, shift);
+      at.setEnciphered(true);
+      return at.decipher();
+    }
+
+    public String toString(){
+      return "scalar: " + scalar + ", shift: " + shift + ", chi-squared: " +
+        String.format("%.2f", score);
+    }
+  }//end Result
+
+  //scores the keys with index in [lo, hi) (key i = SCALARS[i/26], shift i%26)
+  private static class Search extends RecursiveTask<List<Result>>{
+    private static final long serialVersionUID = 1L;
+    private final int[] counts;
+    private final int lo, hi, top;
+
+    Search(int[] myCounts, int myLo, int myHi, int myTop){
+      counts = myCounts;
+      lo = myLo;
+      hi = myHi;
+      top = myTop;
+    }
+
+    protected List<Result> compute(){
+      List<Result> res;
+      if (hi - lo <= KEYS_PER_TASK){
+        res = new ArrayList<Result>(hi - lo);
+        for (int i=lo; i<hi; i++){
+          int scalar = SCALARS[i / MOD], shift = i % MOD;
+          res.add(new Result(scalar, shift,
+            FrequencyAnalysis.chiSquared(counts, scalar, shift)));
+        }
+      }
+      else {//split in half, do one half here and the other in parallel
+        int mid = (lo + hi) / 2;
+        Search left = new Search(counts, lo, mid, top);
+        left.fork();
+        res = new Search(counts, mid, hi, top).compute();
+        res.addAll(left.join());
+      }
+      //only the best "top" keys need to go back up
+      res.sort(Comparator.comparingDouble(Result::getScore));
+      return (res.size() > top) ? new ArrayList<Result>(res.subList(0, top)) : res;
+    }
+  }//end Search
+
+  /*returns the k most likely encipher keys of the ciphertext, best first.
+  Uses the common fork-join pool*/
+  public static List<Result> topKeys(String cipherText, int k){
+    return topKeys(cipherText, k, ForkJoinPool.commonPool());
+  }
+
+  //same as above, on the given pool
+  public static List<Result> topKeys(String cipherText, int k, ForkJoinPool pool){
+    int[] counts = FrequencyAnalysis.letterCounts(cipherText);
+    return pool.invoke(new Search(counts, 0, SCALARS.length * MOD, Math.max(k, 1)));
+  }
+
+  /*same as above for a ciphertext file on the common pool. Only the letter
+  counts matter, so the file is counted a chunk at a time instead of being
+  read into one String*/
+  public static List<Result> topKeys(TextFile cipherFile, int k){
+    int[] counts = FrequencyAnalysis.letterCounts(cipherFile);
+    return ForkJoinPool.commonPool().invoke(
+      new Search(counts, 0, SCALARS.length * MOD, Math.max(k, 1)));
+  }
+
+  //returns the ciphertext deciphered with the most likely key
+  public static String decipher(String cipherText){
+    return topKeys(cipherText, 1).get(0).decipher(cipherText);
+  }
+
+  public static void main(String[] args){
+    AffineTransformation at = AffineTransformation.ATFromText(
+      "frankensteinCh1.txt", 17, 20);
+    String secret = at.encipher(true);
+
+    long start = System.nanoTime();
+    List<Result> best = topKeys(secret, 5);
+    System.out.println("Searched 312 keys in " +
+      (System.nanoTime()-start)/1000 + " us");
+    for (int i=0; i<best.size(); i++) System.out.println(best.get(i));
+    System.out.println(best.get(0).decipher(secret).substring(0, 200));
+  }
+
+}//end class
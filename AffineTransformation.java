@@ -15,14 +15,17 @@ public class AffineTransformation{
   private int scalar, inverse, sample = 1, mod = 26; //scalar is the "a" above
   private final String scalarError =
     "Please use a scalar that does not divide 26";
+  //the en/de-cipher keys compiled into tables; made when first needed and
+  //thrown away (set to null) whenever the scalar or shift changes
+  private SubstitutionTable encipherTable, decipherTable;
 
   //constructor; uses first checks that scalar is not a divisor of 26
   public AffineTransformation(String Message, int Scalar, int Shift){
     message = Message;
     shift = Shift%mod;
     if (this.validScalar(Scalar)) {
-      scalar = Scalar%mod;
-      inverse = Functions.getInverseMod(scalar, mod);
+      scalar = Math.floorMod(Scalar, mod); //least POSITIVE residue
+      inverse = InverseTable.of(mod).get(scalar);
     }
     else {
       System.out.println(scalarError);
@@ -41,7 +44,7 @@ public class AffineTransformation{
 
   //important!! Checks that a scalar is valid, ie GCD(scalar, 26)=1
   public boolean validScalar(int scalar){
-    return (Functions.GCD(scalar % mod, mod)==1);
+    return InverseTable.of(mod).hasInverse(scalar);
   }
 
   //getters & setters----------------------------------------------
@@ -53,7 +56,11 @@ public class AffineTransformation{
   public void setShift(int newShift){
       if (enciphered) System.out.println(
         "You can't change the shift of an enciphered message.");
-      else shift = newShift;
+      else {
+        shift = newShift;
+        encipherTable = null;
+        decipherTable = null;
+      }
     }
   public void setEnciphered(boolean newEnciphered) {
     enciphered = newEnciphered;}
@@ -63,9 +70,11 @@ public class AffineTransformation{
     if (enciphered) System.out.println(
       "You can't change the scalar of an enciphered message.");
     //actually set scalar
-    else if (this.validScalar(scalar)) {
-      scalar = newScalar%26;
-      inverse = Functions.getInverseMod(scalar, mod);
+    else if (this.validScalar(newScalar)) {
+      scalar = Math.floorMod(newScalar, mod); //least POSITIVE residue
+      inverse = InverseTable.of(mod).get(scalar);
+      encipherTable = null;
+      decipherTable = null;
     }
     //message isn't enciphered but GCD(scalar, 26)!=1
     else System.out.println(scalarError);
@@ -91,36 +100,51 @@ public class AffineTransformation{
   the decipher function*/
   public static String applyTransformation(String message, int scalar,
     int shift, boolean includePunctuation){
+    return applyTransformation(message, scalar, shift, includePunctuation,
+      Alphabet.ENGLISH);
+  }
 
-    //note that in the string below, each char is at its cipher position (A=0...)
-    String letters = Functions.getLetters();
-
-    char c; //placeholders
-    int index, mod = 26; //static, so need to redeclare mod
-    //capitalization is a social construct, makes cipher easier to calculate
-    message = message.toUpperCase();
-    String newMessage = "";
-
-    for (int i=0; i<message.length(); i++){
-      c = message.charAt(i);
-      index = letters.indexOf(c);
-      //if letters, apply shift
-      if (index > -1)  //!!!the only new part is the scalar below!!!
-        newMessage = newMessage + letters.charAt((scalar*index + shift)%mod);
-      //otherwise, include punctuation
-      else if (includePunctuation) newMessage = newMessage + c;
-    }//end for
-
-    return newMessage;
+  /*same as above, but over any Alphabet (the mod is the size of the alphabet)
+  capitalization is a social construct, so the Alphabet ignores it and
+  punctuation is copied in uppercase, just like the old toUpperCase copy.
+  The key is compiled into a SubstitutionTable and applied in one pass*/
+  public static String applyTransformation(String message, int scalar,
+    int shift, boolean includePunctuation, Alphabet alphabet){
+    return new SubstitutionTable(scalar, shift, alphabet)
+      .apply(message, includePunctuation);
   }//end applyTransformation
 
+  /*byte version for big ASCII buffers: applies the transformation to
+  src[0...len) and writes into dst, returning the number of bytes written.
+  Uses SIMD (see ByteKernels) when the Vector API is available*/
+  public static int applyTransformation(byte[] src, int len, byte[] dst,
+    int scalar, int shift, boolean includePunctuation){
+    return ByteKernels.affine(src, 0, len, dst, 0, scalar, shift,
+      includePunctuation);
+  }
+
+  //the encipher key C = scalar*P + shift as a table (made once per key)
+  public SubstitutionTable getEncipherTable(){
+    if (encipherTable == null)
+      encipherTable = new SubstitutionTable(scalar, shift);
+    return encipherTable;
+  }
+
+  //the decipher key P = inverse*(C - shift) = inverse*C - inverse*shift
+  public SubstitutionTable getDecipherTable(){
+    if (decipherTable == null)
+      decipherTable = new SubstitutionTable(inverse, -inverse*shift);
+    return decipherTable;
+  }
+
   //applies an affine transformation to the message if it is not already
   //enciphered. Includes punctuation if indicated
   public String encipher(boolean includePunctuation){
     if (enciphered) System.out.println(encipherFailed);
 
     else {//let's letters encipher!
-      message = applyTransformation(message, scalar, shift, includePunctuation); //overwrite with enciphered message
+      //overwrite with enciphered message
+      message = getEncipherTable().apply(message, includePunctuation);
       enciphered = true;
     }//end else
 
@@ -133,7 +157,7 @@ public class AffineTransformation{
   public String decipher(){
     //assume includePunctuation is true
     if (enciphered){
-      message = applyTransformation(message, inverse, -shift, true);
+      message = getDecipherTable().apply(message, true);
       enciphered = false;
     }
     else System.out.println(decipherFailed);
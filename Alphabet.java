@@ -0,0 +1,76 @@
+/*An alphabet of symbols, each with its cipher position (for English, A=0,
+B=1... Z=25). Instead of letters.indexOf(c), which scans the whole alphabet
+for every char of the message, the position of every possible char is looked
+up in a table made once when the alphabet is made. Case is folded in the
+table too (a and A both give 0), so messages don't need a toUpperCase copy.
+
+Other alphabets work the same way and just as fast, ex. 29 symbols with
+space, period and comma: new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ .,")*/
+
+public class Alphabet{
+
+  //the usual 26 letters (same as Functions.getLetters())
+  public static final Alphabet ENGLISH = new Alphabet(Functions.getLetters());
+
+  private final String symbols;
+  private final char[] toChar; //position -> symbol
+  private final short[] toIndex = new short[Character.MAX_VALUE+1]; //char -> position
+
+  //constructor; each symbol's position is its index in the given String.
+  //Symbols should be uppercase (lowercase versions are matched automatically)
+  public Alphabet(String mySymbols){
+    symbols = mySymbols;
+    toChar = symbols.toCharArray();
+    java.util.Arrays.fill(toIndex, (short) -1);
+
+    for (int i=0; i<toChar.length; i++){
+      if (toIndex[toChar[i]] >= 0)
+        System.out.println("Warning: " + toChar[i] + " appears twice in the "
+          + "alphabet. Only the first one is used.");
+      else toIndex[toChar[i]] = (short) i;
+    }
+    //case folding: any char whose uppercase is a symbol gets that position
+    for (int c=0; c<=Character.MAX_VALUE; c++){
+      if (toIndex[c] < 0) {
+        char upper = Character.toUpperCase((char) c);
+        if (upper != c) toIndex[c] = toIndex[upper];
+      }
+    }
+  }
+
+  //getters & lookups-----------------------------------------------------------
+  public String getSymbols(){return symbols;}
+  public int size(){return toChar.length;}
+  //position of c in the alphabet (ignoring case), -1 if it isn't in it
+  public int indexOf(char c){return toIndex[c];}
+  public boolean contains(char c){return toIndex[c] >= 0;}
+  //symbol at the given position
+  public char charAt(int index){return toChar[index];}
+  //symbol at index (mod size), for results that might be negative or too big
+  public char charAtMod(int index){return toChar[Math.floorMod(index, toChar.length)];}
+  //end getters & lookups-------------------------------------------------------
+
+  /*returns the positions of all the symbols in the message in order,
+  skipping everything that isn't in the alphabet (ie the "letters only"
+  version of a message, as numbers)*/
+  public int[] indices(CharSequence message){
+    int len = message.length(), count = 0, index;
+    int[] res = new int[len];
+    for (int i=0; i<len; i++){
+      index = toIndex[message.charAt(i)];
+      if (index >= 0) {res[count] = index; count++;}
+    }
+    return java.util.Arrays.copyOf(res, count);
+  }
+
+  public String toString(){return symbols;}
+
+  public static void main(String[] args){
+    Alphabet a = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ .,");
+    System.out.println(a.size() + " symbols: " + a);
+    System.out.println("h=" + a.indexOf('h') + ", space=" + a.indexOf(' ') +
+      ", !=" + a.indexOf('!'));
+    System.out.println(java.util.Arrays.toString(ENGLISH.indices("Hi, you!")));
+  }
+
+}//end class
@@ -0,0 +1,167 @@
+/*n^power (mod p) for a whole array of n's at once, ex. every block of an RSA
+message. Each power is independent of the others, so the array is cut into
+chunks and the chunks are done in parallel, each one writing straight into
+its part of the out array (which can be the in array itself).
+
+int and long powers share one ExponentPlan for the whole array, since the
+power is the same for every number. Chunks are sized so each one is a decent
+amount of work: thousands of int or long powers, but only one or a few
+BigInteger powers for real size keys (a 2048 bit RSA decipher is about a
+millisecond by itself).
+
+Every method takes the Executor to run on: a ForkJoinPool (ex.
+ForkJoinPool.commonPool()) splits the chunks in half recursively, and any
+other Executor gets one task per chunk. With null, or a pool with only one
+thread, or only one chunk, everything runs on this thread.*/
+
+import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+
+public class BatchModPower{
+
+  //numbers per chunk for int and long powers
+  private static final int INT_CHUNK = 1 << 12, LONG_CHUNK = 1 << 10;
+  //for BigIntegers, about this many bits^2 worth of work per chunk
+  private static final long BIG_WORK = 1L << 22;
+
+  //does body(c) for every chunk c in [lo, hi), splitting in half to fork
+  private static class Chunks extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    private final int lo, hi;
+    private final IntConsumer body;
+
+    Chunks(int myLo, int myHi, IntConsumer myBody){
+      lo = myLo;
+      hi = myHi;
+      body = myBody;
+    }
+
+    protected void compute(){
+      if (hi - lo <= 1) {
+        for (int c=lo; c<hi; c++) body.accept(c);
+      }
+      else {
+        int mid = (lo + hi) / 2;
+        invokeAll(new Chunks(lo, mid, body), new Chunks(mid, hi, body));
+      }
+    }
+  }//end Chunks
+
+  //does body(c) for every chunk c, on executor (see above)
+  private static void forEachChunk(int numChunks, IntConsumer body,
+    Executor executor){
+    if (executor == null || numChunks <= 1 || (executor instanceof ForkJoinPool &&
+      ((ForkJoinPool) executor).getParallelism() <= 1)) {
+      for (int c=0; c<numChunks; c++) body.accept(c);
+    }
+    else if (executor instanceof ForkJoinPool)
+      ((ForkJoinPool) executor).invoke(new Chunks(0, numChunks, body));
+    else {
+      CompletableFuture<?>[] tasks = new CompletableFuture<?>[numChunks];
+      for (int c=0; c<numChunks; c++){
+        final int chunk = c;
+        tasks[c] = CompletableFuture.runAsync(() -> body.accept(chunk), executor);
+      }
+      CompletableFuture.allOf(tasks).join();
+    }
+  }
+
+  //helper: prints a warning and returns false if out is too small for in
+  private static boolean fits(int inLength, int outLength){
+    if (outLength >= inLength) return true;
+    System.out.println("Warning: the output array is smaller than the input.");
+    return false;
+  }
+
+  //out[i] = in[i]^power (mod p) for ints, on the common fork-join pool
+  public static void pow(int[] in, int power, int p, int[] out){
+    pow(in, power, p, out, ForkJoinPool.commonPool());
+  }
+
+  //same as above, on the given executor
+  public static void pow(int[] in, int power, int p, int[] out, Executor executor){
+    if (!fits(in.length, out.length)) return;
+    //the same power for every number, so its steps are worked out once
+    ExponentPlan plan = new ExponentPlan(power, p);
+    int numChunks = (in.length + INT_CHUNK - 1) / INT_CHUNK;
+    forEachChunk(numChunks, c -> {
+      for (int i=c*INT_CHUNK; i<Math.min(in.length, (c+1)*INT_CHUNK); i++)
+        out[i] = plan.pow(in[i]);
+    }, executor);
+  }
+
+  //out[i] = in[i]^power (mod p) for longs, on the common fork-join pool
+  public static void pow(long[] in, long power, long p, long[] out){
+    pow(in, power, p, out, ForkJoinPool.commonPool());
+  }
+
+  //same as above, on the given executor
+  public static void pow(long[] in, long power, long p, long[] out,
+    Executor executor){
+    if (!fits(in.length, out.length)) return;
+    //one plan (and one Montgomery setup for big odd moduli) for every number
+    ExponentPlan plan = new ExponentPlan(power, p);
+    int numChunks = (in.length + LONG_CHUNK - 1) / LONG_CHUNK;
+    forEachChunk(numChunks, c -> {
+      for (int i=c*LONG_CHUNK; i<Math.min(in.length, (c+1)*LONG_CHUNK); i++)
+        out[i] = plan.pow(in[i]);
+    }, executor);
+  }
+
+  //out[i] = in[i]^power (mod p) for BigIntegers, on the common fork-join pool
+  public static void pow(BigInteger[] in, BigInteger power, BigInteger p,
+    BigInteger[] out){
+    pow(in, power, p, out, ForkJoinPool.commonPool());
+  }
+
+  //same as above, on the given executor
+  public static void pow(BigInteger[] in, BigInteger power, BigInteger p,
+    BigInteger[] out, Executor executor){
+    apply(in, out, x -> x.modPow(power, p), p.bitLength(), executor);
+  }
+
+  //out[i] = key.decipher(in[i]) (with the CRT), on the common fork-join pool
+  public static void decipher(RSAKey key, BigInteger[] in, BigInteger[] out){
+    decipher(key, in, out, ForkJoinPool.commonPool());
+  }
+
+  //same as above, on the given executor
+  public static void decipher(RSAKey key, BigInteger[] in, BigInteger[] out,
+    Executor executor){
+    apply(in, out, key::decipher, key.getBits(), executor);
+  }
+
+  //helper: out[i] = f(in[i]) in chunks sized for bits bit numbers
+  private static void apply(BigInteger[] in, BigInteger[] out,
+    UnaryOperator<BigInteger> f, int bits, Executor executor){
+    if (!fits(in.length, out.length)) return;
+    int chunk = (int) Math.max(1, Math.min(LONG_CHUNK, BIG_WORK / ((long) bits * bits + 1)));
+    int numChunks = (in.length + chunk - 1) / chunk;
+    forEachChunk(numChunks, c -> {
+      for (int i=c*chunk; i<Math.min(in.length, (c+1)*chunk); i++) out[i] = f.apply(in[i]);
+    }, executor);
+  }
+
+  public static void main(String[] args){
+    RSAKey key = RSAKey.generate(2048);
+    BigInteger[] c = new BigInteger[256], p = new BigInteger[c.length];
+    for (int i=0; i<c.length; i++) c[i] = key.encipher(BigInteger.valueOf(i));
+    decipher(key, c, p, null); //warm up
+
+    long start = System.nanoTime();
+    decipher(key, c, p, null);
+    long one = System.nanoTime() - start;
+    start = System.nanoTime();
+    decipher(key, c, p);
+    long all = System.nanoTime() - start;
+    System.out.println(c.length + " 2048 bit deciphers: " + one/1000000 +
+      " ms on one thread, " + all/1000000 + " ms on " +
+      ForkJoinPool.commonPool().getParallelism() + " (p[255]=" + p[255] + ")");
+  }
+
+}//end class
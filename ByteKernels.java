@@ -0,0 +1,162 @@
+/*Mod 26 shift kernels (Caesar, affine and Vigenere) over ASCII bytes, for
+enciphering big buffers without going through Strings at all.
+
+There are two versions of every kernel:
+  - the scalar one below, one byte at a time
+  - VectorKernels (vector/VectorKernels.java, built separately), which uses
+    the (incubating) Vector API to do 32 or 64 bytes at a time with SIMD
+    instructions
+VectorKernels is used automatically when it is compiled and the JVM was
+started with --add-modules jdk.incubator.vector; otherwise everything falls
+back to the scalar code. Both give byte-for-byte the same output.
+
+Rules (the same as the String versions for ASCII text): A-Z and a-z are
+letters and come out as uppercase cipher letters; any other byte is copied
+as is if includePunctuation, and dropped if not.*/
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+public class ByteKernels{
+
+  private static final int MOD = 26;
+
+  //handles to VectorKernels' methods, or null if the Vector API isn't there
+  private static final MethodHandle VECTOR_SUBSTITUTE, VECTOR_VIGENERE;
+
+  static {
+    MethodHandle sub = null, vig = null;
+    try {
+      Class<?> c = Class.forName("VectorKernels"); //fails w/o the module
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      sub = lookup.findStatic(c, "substitute", MethodType.methodType(int.class,
+        byte[].class, int.class, int.class, byte[].class, int.class,
+        byte[].class, boolean.class));
+      vig = lookup.findStatic(c, "vigenere", MethodType.methodType(int.class,
+        byte[].class, int.class, int.class, byte[].class, int.class,
+        int[].class, int[].class, boolean.class));
+    } catch (Throwable e) {//ClassNotFound, NoClassDefFound, LinkageError...
+      sub = null;
+      vig = null;
+    }
+    VECTOR_SUBSTITUTE = sub;
+    VECTOR_VIGENERE = vig;
+  }
+
+  //true if the SIMD kernels are being used
+  public static boolean isVectorized(){return VECTOR_SUBSTITUTE != null;}
+
+  //position of an ASCII letter (either case), or -1
+  static int letterIndex(byte b){
+    int up = (b & 0xDF) - 'A'; //clearing bit 5 makes a-z into A-Z
+    return (up >= 0 && up < MOD) ? up : -1;
+  }
+
+  /*the affine key C = scalar*P + shift as a 26 byte table of cipher letters
+  (a Caesar shift is scalar=1)*/
+  public static byte[] affineTable(int scalar, int shift){
+    byte[] table = new byte[MOD];
+    for (int i=0; i<MOD; i++)
+      table[i] = (byte) ('A' + Math.floorMod(scalar*i + shift, MOD));
+    return table;
+  }
+
+  /*applies C = scalar*P + shift (mod 26) to len bytes of src (from srcOff)
+  and writes the result into dst (from dstOff). Returns the number of bytes
+  written (fewer than len if punctuation is dropped)*/
+  public static int affine(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, int scalar, int shift, boolean includePunctuation){
+    return substitute(src, srcOff, len, dst, dstOff, affineTable(scalar, shift),
+      includePunctuation);
+  }
+
+  //same as affine, for a Caesar shift
+  public static int caesar(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, int shift, boolean includePunctuation){
+    return affine(src, srcOff, len, dst, dstOff, 1, shift, includePunctuation);
+  }
+
+  //applies a 26 letter substitution table (ex. from affineTable) to bytes
+  public static int substitute(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, byte[] table, boolean includePunctuation){
+    if (VECTOR_SUBSTITUTE != null) {
+      try {
+        return (int) VECTOR_SUBSTITUTE.invokeExact(src, srcOff, len, dst, dstOff,
+          table, includePunctuation);
+      } catch (Throwable e) {
+        throw new IllegalStateException("vector kernel failed", e);
+      }
+    }
+    return scalarSubstitute(src, srcOff, len, dst, dstOff, table,
+      includePunctuation);
+  }
+
+  //one byte at a time version of substitute (also used for vector tails)
+  static int scalarSubstitute(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, byte[] table, boolean includePunctuation){
+    int out = dstOff, index;
+    for (int i=srcOff; i<srcOff+len; i++){
+      index = letterIndex(src[i]);
+      if (index >= 0) {dst[out] = table[index]; out++;}
+      else if (includePunctuation) {dst[out] = src[i]; out++;}
+    }
+    return out - dstOff;
+  }
+
+  /*Vigenere over bytes. key holds the shift of each keyword letter (already
+  negated mod 26 for decipher, see VigenereCipher), and keyIndex[0] is the
+  position in the keyword of the first letter; it is updated so the next
+  call picks up where this one stopped. Returns the number of bytes written*/
+  public static int vigenere(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, int[] key, int[] keyIndex, boolean includePunctuation){
+    if (key.length == 0) {//trivial keyword, just copy (like VigenereCipher)
+      System.arraycopy(src, srcOff, dst, dstOff, len);
+      return len;
+    }
+    if (VECTOR_VIGENERE != null) {
+      try {
+        return (int) VECTOR_VIGENERE.invokeExact(src, srcOff, len, dst, dstOff,
+          key, keyIndex, includePunctuation);
+      } catch (Throwable e) {
+        throw new IllegalStateException("vector kernel failed", e);
+      }
+    }
+    return scalarVigenere(src, srcOff, len, dst, dstOff, key, keyIndex,
+      includePunctuation);
+  }
+
+  //one byte at a time version of vigenere (also used for vector tails)
+  static int scalarVigenere(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, int[] key, int[] keyIndex, boolean includePunctuation){
+    int out = dstOff, index, k = keyIndex[0];
+    for (int i=srcOff; i<srcOff+len; i++){
+      index = letterIndex(src[i]);
+      if (index >= 0) {
+        index = index + key[k];
+        if (index >= MOD) index = index - MOD;
+        dst[out] = (byte) ('A' + index);
+        out++;
+        k++;
+        if (k == key.length) k = 0;
+      }
+      else if (includePunctuation) {dst[out] = src[i]; out++;}
+    }
+    keyIndex[0] = k;
+    return out - dstOff;
+  }
+
+  public static void main(String[] args){
+    byte[] src = Functions.fileToString("frankensteinLONG.txt")
+      .getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    byte[] dst = new byte[src.length];
+    byte[] table = affineTable(5, 8);
+    for (int i=0; i<500; i++) substitute(src, 0, src.length, dst, 0, table, true);
+    long start = System.nanoTime();
+    int len = substitute(src, 0, src.length, dst, 0, table, true);
+    System.out.println((isVectorized() ? "vector: " : "scalar: ") + len +
+      " bytes in " + (System.nanoTime()-start)/1000 + " us");
+    System.out.println(new String(dst, 0, 60));
+  }
+
+}//end class
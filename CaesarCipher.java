@@ -4,10 +4,15 @@ whose scalar is 1; because it is a specification of affine transformation,
 it extends that class*/
 
 //for use in try decipher methods
-import java.io.File;  // Import the File class
-import java.io.FileWriter;   // Import the FileWriter class
+import java.io.BufferedWriter; // buffered writing for writeShifts
 import java.io.IOException;  // Import the IOException class to handle errors
-import java.util.Scanner;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class CaesarCipher extends AffineTransformation{
 
@@ -47,11 +52,18 @@ public class CaesarCipher extends AffineTransformation{
   it is static in order to be used to decipher strings where we do not know
    the shift*/
   public static String generalShift(String message, int shift){
-    //original and new messages
-    String newMessage = "";
-    for (int i=0; i<message.length(); i++) //apply shift
-      newMessage = newMessage + (char) (message.charAt(i)+shift);
-    return newMessage;//return shifted message
+    //shift in place in one char buffer instead of one new String per char
+    char[] buf = message.toCharArray();
+    generalShiftInto(buf, 0, buf.length, buf, 0, shift);
+    return new String(buf);//return shifted message
+  }
+
+  //allocation free version of generalShift: shifts len chars of src
+  //(from srcOff) into dst (from dstOff). src and dst can be the same array
+  public static void generalShiftInto(char[] src, int srcOff, int len,
+    char[] dst, int dstOff, int shift){
+    for (int i=0; i<len; i++) //apply shift
+      dst[dstOff+i] = (char) (src[srcOff+i]+shift);
   }
 
   /*NOTICE: The object does NOT know if you used general cipher or
@@ -87,40 +99,72 @@ public class CaesarCipher extends AffineTransformation{
   //guess and check section-----------------------------------------------------
   //these are decipher methods that only apply to CeasarCiphers
 
+    /*accepts a message and an int and "guesses" shift values of 0 up to the int,
+    and returns a lazy Stream of the candidates (see ShiftCandidate), in
+    order of shift. Nothing is deciphered until a candidate is scored (on a
+    short sample) or its text is asked for, and a Stream can stop early,
+    ex. shiftCandidates(...).filter(c -> c.getScore() < 0.5).findFirst()*/
+    public static Stream<ShiftCandidate> shiftCandidates(String message,
+      int numShifts, boolean alpha){
+      //the alpha candidates all share the counts of the sample's letters
+      int[] sampleCounts = alpha ? FrequencyAnalysis.letterCounts(
+        message.substring(0, Math.min(message.length(),
+          ShiftCandidate.SAMPLE_SIZE))) : null;
+      return IntStream.range(0, numShifts)
+        .mapToObj(i -> new ShiftCandidate(message, i, alpha, sampleCounts));
+    }
+
+    /*returns the first candidate (smallest shift) whose score is at most the
+    threshold, without looking at any shifts after it. Returns null (and says
+    so) if no shift is that confident*/
+    public static ShiftCandidate firstConfident(String message, int numShifts,
+      boolean alpha, double threshold){
+      ShiftCandidate c = shiftCandidates(message, numShifts, alpha)
+        .filter(x -> x.getScore() <= threshold).findFirst().orElse(null);
+      if (c == null) System.out.println("No shift scored " + threshold +
+        " or better.");
+      return c;
+    }
+
+    //returns the candidate with the best (smallest) score out of all the shifts
+    public static ShiftCandidate bestShift(String message, int numShifts,
+      boolean alpha){
+      return shiftCandidates(message, numShifts, alpha)
+        .min(Comparator.comparingDouble(ShiftCandidate::getScore)).orElse(null);
+    }
+
     /*accepts a message and an int and "guesses" shift values of 0 up to the int,
     and saves message "deciphered" (shifted inversely) by each guessed value
-    to an String array, which is returned*/
+    to an String array, which is returned. This makes every candidate in full;
+    use shiftCandidates to only make the ones you need*/
     public static String[] tryShifts(String message, int numShifts,
       boolean alpha){
-
-      //make array with which to collect (reverse) shifted strings
-      String[] messages = new String[numShifts];
-
-      //shift the original string *in reverse* for each int up to numShifts
       //if one of the values is correct, this is equivalent to the decipher method
-      for (int i=0; i<numShifts; i++){
-        //try to undo shift, save in array.
-        //Decipher method depends on alpha parameter
-        if (alpha)
-          messages[i] = AffineTransformation.applyTransformation(
-            message, 1, numShifts, true);
-        else messages[i] = generalShift(message, -i);
-      }
-      return messages;//return array of potentially deciphered strings
+      return shiftCandidates(message, numShifts, alpha)
+        .map(ShiftCandidate::getText).toArray(String[]::new);
     }
 
-    //acepts a Caesar-Cipher enciphered message and saves the result of tryShifts
-    //to a file. Useful for proof by observation
+    /*acepts a Caesar-Cipher enciphered message and saves every candidate shift
+    to a file. Useful for proof by observation
+    Each candidate is streamed through one buffered writer (on a file channel)
+    a buffer at a time, so no candidate is ever made as a whole String*/
     public static void writeShifts(String secretMessage, int ceiling,
       String fileName, boolean alpha) throws IOException{//throws IOException bc fileWriting
 
-      FileWriter w = new FileWriter(fileName); //make FileWriter
-      String[] results = tryShifts(secretMessage, ceiling, alpha); //get attempted shifts
-      for (int i=0; i<results.length; i++)
-        //write each message and it's guessed shift to the file
-        w.write(i + "\n" + results[i] + "\n\n");
-
-      w.close(); //close the FileWriter
+      //buffered writer on a channel, closed automatically. Same charset as
+      //the old FileWriter (the platform default), not newBufferedWriter's UTF-8
+      try (BufferedWriter w = Files.newBufferedWriter(Paths.get(fileName),
+        Charset.defaultCharset())){
+        Iterator<ShiftCandidate> it =
+          shiftCandidates(secretMessage, ceiling, alpha).iterator();
+        while (it.hasNext()){
+          ShiftCandidate c = it.next();
+          //write each message and it's guessed shift to the file
+          w.write(c.getShift() + "\n");
+          c.writeTo(w);
+          w.write("\n\n");
+        }
+      }
       System.out.println("successfully wrote to " + fileName);//success message!
     }
 
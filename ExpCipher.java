@@ -11,8 +11,12 @@ public class ExpCipher{
   private boolean enciphered=false;//default
   private final String decipherFailed =
     "Decipher failed! Your message is not enciphered!",
-    encipherFailed = "Encipher failed! Your message is already enciphered!",
-    letters = Functions.getLetters();
+    encipherFailed = "Encipher failed! Your message is already enciphered!";
+  //table lookups instead of scanning a String for every letter (ignores case)
+  private final Alphabet letters = Alphabet.ENGLISH;
+  //every letter's number for the current exp and q, made the first time it
+  //is needed and kept for every message after that (see ResidueTable.java)
+  private ResidueTable table = null;
 
 
   //constructor. Accepts a message String and an int and returns an
@@ -32,11 +36,14 @@ public class ExpCipher{
   //checker and setter fr the EC values exp, q, and d
   //if exp and q fail any of the rules below, sets
   private void validExp(int myExp, int myQ){
-    //RULES: 0<exp<q, (exp,q-1)=1
-    if (myExp>0 && myExp < myQ && (Functions.GCD(myExp, myQ-1)==1)){
+    //RULES: 0<exp<q, q is prime, (exp,q-1)=1
+    if (myExp>0 && myExp < myQ && Primality.isPrime(myQ) &&
+      (Functions.GCD(myExp, myQ-1)==1)){
       exp = myExp;
       q = myQ;
-      d = Functions.getInverseMod(exp, q-1); //d is inv(exp) (mod q-1)
+      //d is inv(exp) (mod q-1); just one inverse, so no table for it
+      d = Functions.getInverseMod(exp, q-1);
+      table = null; //new key, so a new table
     }
     else {
       System.out.println("An error was encountered with your exp or  q values."
@@ -72,42 +79,47 @@ public class ExpCipher{
     //don't encipher already enciphered messages
     if (enciphered) System.out.println(encipherFailed);
     else{
-      message = message.toUpperCase();
-      String newMessage = "";
-      int len = message.length(), index;
-
       //Note: Like Hill cipher, expCipher NEEDS to restrict iteself to letters
       //(no punctuation)
-      for (int i=0; i<len; i++){
-        index = letters.indexOf(message.charAt(i));
-        if (index>-1)
-          //fixed overflow with custom powers method
-          //the line below is where the magic happens! C=P^e (mod q)
-          newMessage = newMessage+Functions.modPower(index, exp, q)+" ";
-      }//end for
-
-      //done w new Message
-      message = newMessage;
+      //C=P^e (mod q) for all 26 letters is already in the table, so this is
+      //just lookups
+      message = table().encipher(message, letters);
       enciphered = true;
     }//end else
     return message;
   }//end encipher
 
+  /*block version of encipher: packs k letters into each number (see
+  LetterBlocks.java), with k as big as q allows, so there are k times fewer
+  powers to do and a much shorter ciphertext. The result starts with a
+  "letters:k" header, which is how decipher knows it is in blocks*/
+  public String encipherBlocks(){
+    if (enciphered) System.out.println(encipherFailed);
+    else{
+      int[] lets = letters.indices(message);
+      int num = lets.length, k = LetterBlocks.blockSize(q);
+      StringBuilder newMessage = new StringBuilder(LetterBlocks.header(num, k));
+      int[] numbers = encipherBlocks(lets, k);
+      for (int b=0; b<numbers.length; b++) newMessage.append(' ').append(numbers[b]);
+      message = newMessage.toString();
+      enciphered = true;
+    }
+    return message;
+  }
+
+  //deciphers either format: one number per letter, or blocks from encipherBlocks
   public String decipher(){
-    if (enciphered){
-      int C;
-      String newMessage="";
-      //enciphered message is numbers delimited by a space
-      String[] lets = message.split(" ");
-
-      for (int i=0; i<lets.length; i++)
-        /*note: even tho we're using mod q, not mod 26, b/c the exponent of
-        d "undoes" the exponent of exp (look up a proof for more details)
-        we get the original value*/
-        newMessage = newMessage +
-          letters.charAt(Functions.modPower(Integer.parseInt(lets[i]), d, q));
-
-      message = newMessage;
+    int[] header = enciphered ? LetterBlocks.readHeader(message) : null;
+    if (header != null){
+      message = decipherBlocks(header[0], header[1]);
+      enciphered = false;
+    }
+    else if (enciphered){
+      /*note: even tho we're using mod q, not mod 26, b/c the exponent of
+      d "undoes" the exponent of exp (look up a proof for more details)
+      we get the original value (the table has C^d for every C that a letter
+      enciphers to)*/
+      message = table().decipher(message, letters);
       enciphered = false;
     }
     else System.out.println(decipherFailed);
@@ -115,9 +127,98 @@ public class ExpCipher{
     return message;
   }
 
+  /*enciphers the message to bytes (see ResidueCodec.java) instead of text,
+  one number per letter, or k letters per number if blocks is true (like
+  encipherBlocks). The message itself isn't changed; decipherBytes turns the
+  bytes back into text. Returns null if the message is already enciphered*/
+  public byte[] encipherBytes(boolean blocks){
+    if (enciphered) {
+      System.out.println(encipherFailed);
+      return null;
+    }
+    int[] lets = letters.indices(message);
+    int num = lets.length, k = blocks ? LetterBlocks.blockSize(q) : 1;
+    int[] blockNumbers = (k == 1) ? null : encipherBlocks(lets, k);
+    long[] numbers = new long[LetterBlocks.numBlocks(num, k)];
+    for (int b=0; b<numbers.length; b++)
+      numbers[b] = (k == 1) ? table().number(lets[b]) : blockNumbers[b];
+    return ResidueCodec.encode(num, k, numbers, q);
+  }
+
+  //deciphers bytes from encipherBytes, sets the message to the result (not
+  //enciphered) and returns it
+  public String decipherBytes(byte[] data){
+    ResidueCodec in = ResidueCodec.reader(data);
+    if (in == null) return message;
+    int num = in.getNumLetters(), k = in.getBlockSize(), count = 0;
+    //read all the numbers first, so the powers can be done all at once
+    int[] numbers = new int[Math.min(in.getNumBlocks(), data.length)];
+    while (count < numbers.length && in.hasNext())
+      numbers[count++] = (int) (in.nextLong() % q);
+    numbers = java.util.Arrays.copyOf(numbers, count);
+    if (k == 1) {
+      if (count < num) System.out.println("Warning: the message is missing some blocks.");
+      char[] newMessage = new char[count];
+      for (int i=0; i<count; i++)
+        newMessage[i] = letters.charAtMod(table().letterOf(numbers[i]));
+      message = new String(newMessage);
+    }
+    else message = unpackBlocks(num, k, numbers);
+    enciphered = false;
+    return message;
+  }
+
+  //helper: the table for the current key, made the first time it is needed
+  private ResidueTable table(){
+    if (table == null) table = new ResidueTable(q, exp, d, letters.size());
+    return table;
+  }
+
+  /*helper: packs the letters in blocks of k and enciphers every block at
+  once (every block is below q, so C=P^e (mod q) still works). The power is
+  the same for all of them, so BatchModPower works out its steps once*/
+  private int[] encipherBlocks(int[] lets, int k){
+    int num = lets.length;
+    int[] numbers = new int[LetterBlocks.numBlocks(num, k)];
+    for (int b=0; b<numbers.length; b++)
+      numbers[b] = (int) LetterBlocks.pack(lets, b*k, Math.min(k, num-b*k));
+    BatchModPower.pow(numbers, exp, q, numbers);
+    return numbers;
+  }
+
+  //helper: deciphers numLetters letters in blocks of k (after the header)
+  private String decipherBlocks(int numLetters, int k){
+    String[] blocks = message.trim().split(" +");
+    int[] numbers = new int[Math.min(LetterBlocks.numBlocks(numLetters, k),
+      blocks.length-1)];
+    for (int b=0; b<numbers.length; b++) numbers[b] = Integer.parseInt(blocks[b+1]);
+    return unpackBlocks(numLetters, k, numbers);
+  }
+
+  /*helper: deciphers every block number at once (in parallel for a long
+  message, see BatchModPower.java) and unpacks them into numLetters letters
+  in blocks of k*/
+  private String unpackBlocks(int numLetters, int k, int[] numbers){
+    if (numbers.length < LetterBlocks.numBlocks(numLetters, k))
+      System.out.println("Warning: the message is missing some blocks.");
+    BatchModPower.pow(numbers, d, q, numbers);
+    int len = Math.min(numLetters, numbers.length*k);
+    char[] newMessage = new char[len];
+    for (int b=0; b*k<len; b++)
+      LetterBlocks.unpack(numbers[b], Math.min(k, len-b*k), newMessage, b*k);
+    return new String(newMessage);
+  }
+
   public static void main(String[] args){
     ExpCipher ec = ECFromText("frankensteinCh1.txt", 17, 61);
     System.out.println(ec.encipher()+"\n"+ec.decipher());
+
+    //q=17581 > 26^3, so 3 letters per number
+    ExpCipher blocks = ECFromText("frankensteinCh1.txt", 17, 17581);
+    System.out.println(blocks.encipherBlocks()+"\n"+blocks.decipher());
+    //same thing as bytes: 2 bytes for every 3 letters
+    byte[] data = blocks.encipherBytes(true);
+    System.out.println(data.length+" bytes\n"+blocks.decipherBytes(data));
   }
 
 }
@@ -0,0 +1,131 @@
+/*x^e (mod m) for a FIXED e and m, and lots of different x's, ex. every
+letter or block of an ExpCipher/RSACipher message (always ^e to encipher,
+^d to decipher). ModPower reads the bits of e all over again for every x;
+a plan reads them once, when it is made, and keeps the steps:
+  - e is cut into sliding windows (like Montgomery.pow): runs of up to w bits
+    that start and end with a 1, so only the odd powers x, x^3, ... are
+    needed, and each window is one multiply instead of one per 1 bit
+  - each step is "square this many times, then multiply by x^(odd number)"
+so pow(x) just makes x's odd powers and follows the steps. Only the odd
+powers that e actually uses are made.
+
+The arithmetic is the same as ModPower: plain longs while products fit,
+Montgomery for big odd moduli, and Primality.mulMod for big even ones. A plan
+never changes after it is made, so threads can share it.*/
+
+public class ExponentPlan{
+
+  //largest modulus whose products still fit in a long (see ModPower)
+  private static final long SQRT_LONG_MAX = 3037000499L;
+
+  private final long exponent, modulus;
+  private final Montgomery mont; //null unless the modulus is big and odd
+  //step i: square squarings[i] times, then multiply by x^(2*windows[i]+1)
+  private final int[] squarings, windows;
+  private final int trailing, numOdd; //squarings after the last step, odd powers used
+
+  /*the plan for x^exponent (mod modulus); modulus has to be >= 1. A negative
+  exponent counts as 0, like ModPower*/
+  public ExponentPlan(long myExponent, long myModulus){
+    exponent = Math.max(myExponent, 0);
+    modulus = myModulus;
+    mont = (modulus > SQRT_LONG_MAX && (modulus & 1) == 1) ? new Montgomery(modulus) : null;
+
+    int bits = 64 - Long.numberOfLeadingZeros(exponent);
+    int w = Montgomery.windowSize(bits);
+    int[] sq = new int[bits], win = new int[bits];
+    int steps = 0, pending = 0, maxWin = 0, i = bits-1;
+    while (i >= 0){
+      if (((exponent >>> i) & 1) == 0) {//zeros just square
+        pending++;
+        i--;
+        continue;
+      }
+      //longest window [j, i] of at most w bits that ends in a 1
+      int j = Math.max(i-w+1, 0);
+      while (((exponent >>> j) & 1) == 0) j++;
+      sq[steps] = pending + (i-j+1);
+      win[steps] = (int) ((exponent >>> j) & ((1L << (i-j+1)) - 1)) >> 1;
+      maxWin = Math.max(maxWin, win[steps]);
+      steps++;
+      pending = 0;
+      i = j-1;
+    }
+    squarings = java.util.Arrays.copyOf(sq, steps);
+    windows = java.util.Arrays.copyOf(win, steps);
+    trailing = pending;
+    numOdd = maxWin + 1;
+  }
+
+  //getters---------------------------------------------------------------------
+  public long getExponent(){return exponent;}
+  public long getModulus(){return modulus;}
+  //multiplies (squares included) per pow, ex. to compare with square and multiply
+  public int getMultiplies(){
+    int total = trailing + numOdd; //x^2 and the odd powers
+    for (int i=0; i<squarings.length; i++) total += squarings[i] + 1;
+    return total;
+  }
+  //end getters-----------------------------------------------------------------
+
+  //helpers: multiply, and move in and out of the form mul works in
+  private long mul(long a, long b){
+    return (mont != null) ? mont.multiply(a, b) : Primality.mulMod(a, b, modulus);
+  }
+  private long in(long x){
+    x = Math.floorMod(x, modulus);
+    return (mont != null) ? mont.toMont(x) : x;
+  }
+  private long out(long x){
+    return (mont != null) ? mont.fromMont(x) : x;
+  }
+
+  //x^exponent (mod modulus), the least positive residue
+  public long pow(long x){
+    if (modulus == 1) return 0;
+    if (squarings.length == 0) return 1; //x^0
+    long base = in(x);
+    long[] odd = new long[numOdd]; //odd[i] = x^(2i+1)
+    odd[0] = base;
+    if (numOdd > 1) {
+      long sq = mul(base, base);
+      for (int i=1; i<numOdd; i++) odd[i] = mul(odd[i-1], sq);
+    }
+    //the first step starts from 1, so its squarings can be skipped
+    long result = odd[windows[0]];
+    for (int s=1; s<squarings.length; s++){
+      for (int k=0; k<squarings[s]; k++) result = mul(result, result);
+      result = mul(result, odd[windows[s]]);
+    }
+    for (int k=0; k<trailing; k++) result = mul(result, result);
+    return out(result);
+  }
+
+  //same as above for an int modulus
+  public int pow(int x){
+    return (int) pow((long) x);
+  }
+
+  public static void main(String[] args){
+    int[] xs = new int[1 << 20];
+    java.util.Random rnd = new java.util.Random(1);
+    for (int i=0; i<xs.length; i++) xs[i] = rnd.nextInt();
+    int e = 1234567891, m = 2147483629; //a prime near 2^31
+    ExponentPlan plan = new ExponentPlan(e, m);
+    System.out.println(plan.getMultiplies() + " multiplies per power, square " +
+      "and multiply needs " + (31 + Integer.bitCount(e)));
+
+    long sum1 = 0, sum2 = 0;
+    for (int rep=0; rep<3; rep++){
+      long start = System.nanoTime();
+      for (int i=0; i<xs.length; i++) sum1 += ModPower.pow(xs[i], e, m);
+      long one = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i=0; i<xs.length; i++) sum2 += plan.pow(xs[i]);
+      long two = System.nanoTime() - start;
+      System.out.println("ModPower " + one/1000000 + " ms, plan " + two/1000000 +
+        " ms" + (sum1 == sum2 ? "" : " (MISMATCH)"));
+    }
+  }
+
+}//end class
@@ -0,0 +1,157 @@
+/*Factors longs into primes. Small factors are found by trial division with
+the shared Sieve's primes, and whatever is left (if it isn't prime) is split
+with Pollard's rho, in Brent's version: walk x -> x^2 + c (mod n); the walk
+(mod some prime factor p) has to repeat after about sqrt(p) steps, and when
+it does GCD(x - y, n) shows p. The GCDs are batched (multiply 128 differences
+together and take one GCD) and the walk runs in Montgomery form, so 64-bit
+composites split in milliseconds.
+
+Results are kept in a bounded LRU cache keyed by n, because the same n
+(ex. an RSA modulus, or phi of one) tends to be asked about over and over.*/
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Factorization{
+
+  //number of factorizations the cache keeps
+  public static final int CACHE_SIZE = 4096;
+  //trial divide by primes below this before using Pollard's rho
+  private static final int TRIAL_LIMIT = 1 << 12;
+  //number of differences multiplied together per GCD in Brent's loop
+  private static final int BATCH = 128;
+
+  //access ordered LinkedHashMap, so it works as an LRU cache
+  private static final Map<Long, long[]> cache =
+    new LinkedHashMap<Long, long[]>(64, 0.75f, true){
+      protected boolean removeEldestEntry(Map.Entry<Long, long[]> e){
+        return size() > CACHE_SIZE;
+      }
+    };
+
+  /*returns the prime factors of n, with repeats, smallest first
+  (ex. factor(360) = {2, 2, 2, 3, 3, 5}). n < 2 has no prime factors*/
+  public static long[] factor(long n){
+    if (n < 2) return new long[0];
+
+    synchronized (cache){
+      long[] known = cache.get(n);
+      if (known != null) return known.clone();
+    }
+
+    long[] res;
+    Sieve table = Sieve.shared();
+    if (table.inRange(n)) {//already in the table, just read them off
+      int[] small = table.factor((int) n);
+      res = new long[small.length];
+      for (int i=0; i<small.length; i++) res[i] = small[i];
+    }
+    else res = bigFactor(n, table);
+
+    synchronized (cache){cache.put(n, res);}
+    return res.clone();
+  }
+
+  //factors n that is too big for the table: trial division then rho
+  private static long[] bigFactor(long n, Sieve table){
+    long[] buf = new long[64]; //2^63 is the most factors a long can have
+    int count = 0;
+
+    //trial division by the table's small primes
+    for (int i=0; i<table.numPrimes(); i++){
+      long p = table.prime(i);
+      if (p >= TRIAL_LIMIT || p*p > n) break;
+      while (n % p == 0) {buf[count] = p; count++; n = n / p;}
+    }
+
+    //anything left has no factors below TRIAL_LIMIT
+    long[] stack = new long[64];
+    int top = 0;
+    if (n > 1) {stack[0] = n; top = 1;}
+    while (top > 0){
+      top--;
+      long m = stack[top];
+      if (m < (long) TRIAL_LIMIT*TRIAL_LIMIT || Primality.isPrime(m)) {
+        buf[count] = m; //no factor below sqrt(m), or Miller-Rabin says prime
+        count++;
+      }
+      else {//split it and factor both halves
+        long d = rho(m);
+        stack[top] = d;
+        stack[top+1] = m / d;
+        top = top + 2;
+      }
+    }//end while
+
+    long[] res = Arrays.copyOf(buf, count);
+    Arrays.sort(res);
+    return res;
+  }
+
+  /*returns a nontrivial factor of an odd composite n with Brent's version of
+  Pollard's rho. If a walk fails (finds n itself) it tries the next c*/
+  private static long rho(long n){
+    Montgomery mont = new Montgomery(n);
+    for (long c=1; ; c++){
+      long cM = mont.toMont(c), y = mont.toMont(2), x = y, ys = y,
+        q = mont.one(), g = 1;
+      int r = 1;
+
+      while (g == 1){
+        x = y;
+        for (int i=0; i<r; i++) y = step(mont, y, cM);
+        for (int k=0; k<r && g==1; k=k+BATCH){
+          ys = y;
+          for (int i=0; i<Math.min(BATCH, r-k); i++){
+            y = step(mont, y, cM);
+            //GCD(product of differences, n) is the same in Montgomery form
+            q = mont.multiply(q, Math.abs(x-y));
+          }
+          g = Functions.GCD(q, n);
+        }
+        r = r*2;
+      }//end while
+
+      if (g == n){//batched too much; redo the last batch one step at a time
+        do {
+          ys = step(mont, ys, cM);
+          g = Functions.GCD(Math.abs(x-ys), n);
+        } while (g == 1);
+      }
+      if (g != n) return g;
+    }//end for
+  }
+
+  //one step of the walk, y -> y^2 + c (mod n), in Montgomery form
+  private static long step(Montgomery mont, long y, long c){
+    return mont.addMod(mont.multiply(y, y), c);
+  }
+
+  /*phi(n), the number of integers from 1 to n relatively prime to n,
+  from the prime factors: phi(n) = n * product of (1 - 1/p)*/
+  public static long phi(long n){
+    if (n < 1) return 0;
+    long res = n, last = 0;
+    long[] primes = factor(n);
+    for (int i=0; i<primes.length; i++){
+      if (primes[i] != last) {
+        res = res / primes[i] * (primes[i]-1);
+        last = primes[i];
+      }
+    }
+    return res;
+  }
+
+  public static void main(String[] args){
+    long[] tests = {360, 600851475143L, 9223372036854775807L,
+      4611686014132420609L, 999999866000004473L};
+    for (int i=0; i<tests.length; i++){
+      long start = System.nanoTime();
+      long[] f = factor(tests[i]);
+      System.out.println(tests[i] + " = " + Arrays.toString(f) + ", phi = " +
+        phi(tests[i]) + " (" + (System.nanoTime()-start)/1000 + " us)");
+    }
+  }
+
+}//end class
@@ -1,13 +1,16 @@
 /*A class for analyzing the frequency of letters in a string.
 Useful for deciphering a monoalphabetic substitution cipher*/
 
+import java.nio.CharBuffer;
 import java.util.Scanner;
 
 public class FrequencyAnalysis{
 
-  private String message, letters = Functions.getLetters();
+  private String message;
+  //table lookups instead of scanning a String for every letter (ignores case)
+  private final Alphabet letters = Alphabet.ENGLISH;
   private int[] freqArray;
-  private final int numLetters = letters.length();//num letters in Eng alphabet
+  private final int numLetters = letters.size();//num letters in Eng alphabet
 
   public static void main(String[] args){
     FrequencyAnalysis george = FAFromFile(args[0]);
@@ -30,6 +33,18 @@ public class FrequencyAnalysis{
     return new FrequencyAnalysis(message);
   }
 
+  /*the same frequencies as FAFromFile(fileName).getFreqArray(), but the file
+  is counted one TextFile chunk at a time, so it is never held as one String
+  (for corpora too big for the heap)*/
+  public static int[] fileFreqArray(String fileName){
+    TextFile file = new TextFile(fileName);
+    if (!file.exists()) {
+      System.out.println("File not found! :(");
+      return new int[Alphabet.ENGLISH.size()];
+    }
+    return thousandths(letterCounts(file));
+  }
+
   //getters & setters
   public String getMessage(){return message;}
   public int[] getFreqArray(){return freqArray;}
@@ -41,18 +56,16 @@ public class FrequencyAnalysis{
   /*accepts a string and returns a int array whose values correspond to
   the frequency of each letter in thousandths*/
   public int[] analyze(){
-    //note: need a total because there might be punctuation
-    int total=0, index;
-    int[] count = new int[numLetters], //first tally up occurances
-           freq = new int[numLetters]; //result array
+    //first tally up occurances, then turn them into frequencies
+    return thousandths(letterCounts(message));
+  }//end analyze
 
-    for (int i=0; i<message.length(); i++){
-      index = letters.indexOf(message.charAt(i));
-      if (index >= 0) {//another fancy version of "if is alpha"
-        count[index]++; //increment sightings of the letter
-        total++;//increase total number of letters seen
-      }//end if
-    }//end for
+  //helper: letter counts to frequencies in thousandths of the total
+  private static int[] thousandths(int[] count){
+    //note: need a total because there might be punctuation
+    int total=0;
+    int[] freq = new int[count.length]; //result array
+    for (int i=0; i<count.length; i++) total = total + count[i];
 
     //note freq and count have same length; calculate frequency
     for (int i=0; i<freq.length; i++)
@@ -60,7 +73,7 @@ public class FrequencyAnalysis{
       freq[i] = (int) ((double) count[i] / total * 1000 + .5);
 
     return freq;
-  }//end analyze
+  }
 
   /*calculates the occurance of two of the same letter appearing next to each
   other, and returns an int array of these totals as thousandths of the total
@@ -165,6 +178,66 @@ public class FrequencyAnalysis{
     return engFreq; //note cannot return directly an array created the way above
   }
 
+  /*counts how many times each letter appears in the message (A=0...)
+  in one pass, ignoring case and punctuation. Static so it works on any
+  text, ex. a ciphertext, without making a FrequencyAnalysis object*/
+  public static int[] letterCounts(CharSequence message){
+    Alphabet letters = Alphabet.ENGLISH;
+    int[] count = new int[letters.size()];
+    int index;
+    for (int i=0; i<message.length(); i++){
+      index = letters.indexOf(message.charAt(i));
+      if (index >= 0) count[index]++;
+    }
+    return count;
+  }
+
+  /*same as above for a whole file, one TextFile chunk at a time, so only one
+  chunk of the file is in memory at once*/
+  public static int[] letterCounts(TextFile file){
+    Alphabet letters = Alphabet.ENGLISH;
+    int[] count = new int[letters.size()];
+    int index;
+    for (CharBuffer chunk : file){
+      while (chunk.hasRemaining()){
+        index = letters.indexOf(chunk.get());
+        if (index >= 0) count[index]++;
+      }
+    }
+    return count;
+  }
+
+  /*the chi-squared statistic of letter counts against English: the sum over
+  letters of (observed - expected)^2 / expected. The smaller it is, the more
+  the counts look like English text. counts[i] is the count of letter i*/
+  public static double chiSquared(int[] counts){
+    return chiSquared(counts, 1, 0);
+  }
+
+  /*same as above, but the count of plaintext letter p is read from
+  counts[(scalar*p + shift) mod 26], ie counts of a ciphertext scored as if
+  it were deciphered with the affine key (scalar, shift), without actually
+  deciphering anything*/
+  public static double chiSquared(int[] counts, int scalar, int shift){
+    int[] eng = ENG_FREQ;
+    int total = 0, len = counts.length;
+    for (int i=0; i<len; i++) total = total + counts[i];
+    if (total == 0) return Double.MAX_VALUE; //nothing to score
+
+    double chi = 0, expected, diff;
+    for (int p=0; p<len; p++){
+      //engFreqArray is in thousandths but doesn't sum to exactly 1000
+      expected = (double) total * eng[p] / ENG_FREQ_SUM;
+      diff = counts[Math.floorMod(scalar*p + shift, len)] - expected;
+      chi = chi + diff*diff/expected;
+    }
+    return chi;
+  }
+
+  //English frequencies for chiSquared (copied once, not per call)
+  private static final int[] ENG_FREQ = engFreqArray();
+  private static final int ENG_FREQ_SUM = java.util.Arrays.stream(ENG_FREQ).sum();
+
   //A string with letters in order from most to least common.
   //this is the string that would be returned if we made a Frequency array
   //object with the English freq and called mostCommonLetters
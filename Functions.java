@@ -1,28 +1,49 @@
-import java.io.File;  // Import the File class
-import java.io.FileNotFoundException;  // Import this class to handle errors
-import java.util.Scanner; // Import the Scanner class to read text file
+import java.nio.CharBuffer; //chunks handed out by TextFile
 
 public class Functions{
 
 //basic / text methods----------------------------------------------------
 
-  //accepts a file name and returns a String representing the text stored
-  //in the file. Returns an empty string by default
+  /*accepts a file name and returns a String representing the text stored
+  in the file. Returns an empty string by default.
+  The file is read chunk by chunk through TextFile (memory mapped) into one
+  presized StringBuilder, so this is linear in the size of the file. Like the
+  old Scanner version, every line ends in "\n" (\r\n and \r are converted)*/
   public static String fileToString(String fileName){
-    String result = "";
-
-    try {
-      Scanner reader = new Scanner(new File(fileName));
-      while (reader.hasNextLine()) {
-        //String data = myReader.nextLine();
-        result = result + reader.nextLine() + "\n";
-      }
-      reader.close();
-    }//end try
-    catch (FileNotFoundException e) {
+    TextFile file = new TextFile(fileName);
+    if (!file.exists()) {
       System.out.println("File not found! :(");
-    }//end catch
-    return result;
+      return "";
+    }
+
+    //bytes >= chars for every charset we care about, so this never regrows
+    StringBuilder result =
+      new StringBuilder((int) Math.min(file.size(), Integer.MAX_VALUE-8));
+    boolean lastCR = false; //a \r\n pair can be split between two chunks
+    char c;
+
+    for (CharBuffer chunk : file){
+      while (chunk.hasRemaining()){
+        c = chunk.get();
+        if (c == '\n') {
+          if (!lastCR) result.append('\n');//\r\n was already written at \r
+          lastCR = false;
+        }
+        else if (c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085'){
+          result.append('\n');//the other line separators Scanner knew about
+          lastCR = (c == '\r');
+        }
+        else {
+          result.append(c);
+          lastCR = false;
+        }
+      }//end while
+    }//end for
+
+    //Scanner added a "\n" after the last line even if the file didn't have one
+    int len = result.length();
+    if (len > 0 && result.charAt(len-1) != '\n') result.append('\n');
+    return result.toString();
   }
 
   public static String getLetters(){
@@ -31,49 +52,68 @@ public class Functions{
 
 //mathematical methods----------------------------------------------------
 
-  //iteratively tests if a given integer is prime
+  /*tests if a given integer is prime. Small numbers are looked up in the
+  shared Sieve table, bigger ones use deterministic Miller-Rabin (Primality)*/
   public static boolean isPrime(int n){
-    //1 is not prime
-    if (n==1) return false;
-
-    int end = n/2;
-
-    for (int i=2; i<=end; i++){
-        if (n%i==0) return false;
-      }//end for
-      return true;
-    }//end isPrime
-
-  /*basically a lazy version of Euclidean algorith
-  finds the GCD of the integers a and b and returns it
-  yes, this is more generally faster than iteratively checking all numbers
-  up to max(a, b) as divisors of both a and b
-  Copied from open source*/
-  public static int GCD(int a, int b){
-    while (a != b) {
-      if (a<0 || b<0) return 0; //prevent infinite loop
-          if(a > b)
-                a = a - b;
-            else
-                b = b - a;
-        }
-    return a;
+    return Primality.isPrime(n);
+  }//end isPrime
+
+  /*finds the GCD of the integers a and b and returns it, with the binary
+  (Stein's) version of the Euclidean algorithm: only shifts and subtractions,
+  and the numbers at least halve every other step, so it takes O(log) steps
+  instead of the old repeated subtraction. Signs are ignored, GCD(0, b)=|b|.
+  Returns a long because GCD(Integer.MIN_VALUE, 0) is 2^31, which doesn't
+  fit in an int (it would come out negative)*/
+  public static long GCD(int a, int b){
+    return GCD((long) a, (long) b);
   }
 
-  //finds the inverse of some integer mod n, where the inverse x is defined
-  //as nx=1(mod "mod"). If no inverse exists, returns 0
-  public static int getInverseMod(int n, int mod){
-    //computers are really good at integer multiplication
-    //it's easier just to calculate the inverse iteratively
-    int inverse = 0;
-    n = n % mod;
+  /*long version of GCD (see above). |Long.MIN_VALUE| = 2^63 is worked with
+  as an unsigned number, so the result is always right and positive, except
+  GCD(Long.MIN_VALUE, 0 or Long.MIN_VALUE) = 2^63, which is returned as
+  Long.MIN_VALUE (the same as Math.abs(Long.MIN_VALUE))*/
+  public static long GCD(long a, long b){
+    a = Math.abs(a);
+    b = Math.abs(b);
+    if (a == 0) return b;
+    if (b == 0) return a;
+
+    //2^shift is the largest power of 2 dividing both
+    int shift = Long.numberOfTrailingZeros(a | b);
+    //>>> since 2^63 is negative as a long; after this both are below 2^63
+    a = a >>> Long.numberOfTrailingZeros(a);
+    while (b != 0){
+      b = b >>> Long.numberOfTrailingZeros(b);
+      //both odd now, so their difference is even
+      if (a > b) {long t = b; b = a; a = t;}
+      b = b - a;
+    }//end while
+    return a << shift;
+  }
 
-    if (GCD(n, mod)==1){//if inverse exists (check prevents inf recursion)
-      //note: we know inverse exists, so don't worry about returning mod-1 in error
-      while (inverse<mod && (inverse*n)%mod!=1) inverse++;
-    }//end if
+  /*finds the inverse of some integer mod n, where the inverse x is defined
+  as nx=1(mod "mod"). If no inverse exists, returns 0
+  Uses the extended Euclidean algorithm, which keeps track of how each
+  remainder is written as (multiple of n) + (multiple of mod). When the
+  remainder gets to 1, the multiple of n is the inverse. O(log(mod)) steps*/
+  public static int getInverseMod(int n, int mod){
+    return (int) getInverseMod((long) n, (long) mod);
+  }
 
-    return inverse;
+  //long version of getInverseMod (see above)
+  public static long getInverseMod(long n, long mod){
+    if (mod <= 1) return 0; //everything is 0 mod 1, and mod<1 is nonsense
+    //least POSITIVE residue, so negative n works too
+    long r0 = mod, r1 = Math.floorMod(n, mod), s0 = 0, s1 = 1, q, t;
+
+    while (r1 != 0){
+      q = r0 / r1;
+      t = r0 - q*r1; r0 = r1; r1 = t;
+      t = s0 - q*s1; s0 = s1; s1 = t;
+    }//end while
+    //r0 is GCD(n, mod); no inverse unless it is 1
+    if (r0 != 1) return 0;
+    return Math.floorMod(s0, mod);
   }//end getInverse
 
   /*an mod-power calculation that is able to calculate large squares
@@ -81,15 +121,9 @@ public class Functions{
   the number is raised to, and the mod p, and returns the least POSITIVE
   residue n^power (mod p)*/
   public static int modPower(int n, int power, int p){
-   int result=1;
-   while (power>0){
-      if (power%2==1) {
-         result = (result*n)%p;
-      }//end if
-      n = (n*n)%p;//successive squaring
-      power = power/2;
-   }//end while
-   return result;
+   //same successive squaring as before, but the products are done in longs
+   //(see ModPower), so it no longer overflows once p passes 46341
+   return ModPower.pow(n, power, p);
  }//end modPower
 
   //phi(n) is the number of integers between 1 and n-1 that are relatively prime
@@ -99,30 +133,13 @@ public class Functions{
     //base case
     if (x<3) return 1;
 
-    //m*n=x (ALWAYS), m will be decreased and n will be increased until (m,n)=1
-    //at that point for some k, n=i^k
-    int half = x/2, m=x, n=1, k=0;
-
-    //iteratively look for phi values. We need <= half bc otherwise 4 would fail.
-    for (int i=2; i<=half; i++){
-        while (m%i==0) {m=m/i; n=n*i; k++;}
-        if (m != x) {
-          //if m==1, then x=n=i^k, and i must be prime (otherwise we would have
-          //already factored out its divisors)
-          if (m==1)
-            //prime powers: if p is prime and k gte 1, then phi(p^k)=p^k-p^(k-1)
-            return n-n/i;//n=i^k, n/k=i^(k-1); see below for k=1 case
-          //phi is multiplicative: if (m,n)=1, then phi(mn)=phi(m)*phi(n)
-          //note b/c we left while loop, (m,n)=1 and x=mn always
-          else return phiOfN(m)*phiOfN(n);
-        }//end if
-        //note: we don't need to set m, n, k b/c if those values changed,
-        //then m!=n is true, so we return something and end the iteration
-      }//end for
-
-    //if prime, phi(n)=n-1
-    //YES, n prime is technically a case of prime powers,
-    //but this simplifies the computation
-    return x-1;
+    //small x: already in the shared Sieve table, no factoring needed
+    Sieve table = Sieve.shared();
+    if (table.inRange(x)) return table.phi(x);
+
+    //big x: factor it (trial division + Pollard's rho, cached) and use
+    //phi(p^k)=p^k-p^(k-1) and phi(mn)=phi(m)*phi(n) for (m,n)=1,
+    //see Factorization.phi
+    return (int) Factorization.phi(x);
   }//end phiOfN
 }
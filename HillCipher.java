@@ -1,23 +1,43 @@
-/*Matrix class generously provided by Code Project through CPOL 1.02
-
-  This class provides message encipher and decipher via the Hill Cipher,
+/*This class provides message encipher and decipher via the Hill Cipher,
   which uses Matrix multiplication to encipher letters in "blocks".
   Its encipher function is C=AP+K; where A is the scalar Matrix, K is the
   shift matrix, and C and P are the cipher and plaintext matrices respectively
   representing letters from the message.
 
-  IMPORTANT: for ease of Matrix operations, the scalar and shift are stored
-  as *double* arrays, and rounded *down* when converting to ints for modular
-  arithmetic
+  IMPORTANT: the scalar and shift are still given as *double* arrays (as they
+  always were), but they are rounded *down* to ints mod 26 right away. All of
+  the matrix math is done with ints mod 26 in ModMatrix, so there is no
+  floating-point rounding, and each block is done without making any objects.
+  The key itself (scalar, shift and everything worked out from them) is a
+  HillKey, which is cached and can be shared
+
+  Big messages can also be done in parallel (encipherParallel and
+  decipherParallel): blocks don't depend on each other once the letters are
+  read off, so the message is cut into segments that are done with fork-join.
+  The output is exactly the same as encipher/decipher.
+
+  Ciphertext format: "[n]" followed by the cipher letters, where n is the
+  number of letters in the plaintext. The last block is padded out with
+  extra letters, and the header says how many of the deciphered letters are
+  real, so decipher knows that before it reads a single block. (Ciphertext
+  from before the header, which marks each extra letter with a "*_" at the
+  end instead, still deciphers.)
 */
 
-import matrix.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 public class HillCipher{
 
+  private static final int MOD = 26;
+  //chars of message (or letters of blocks) per segment; each segment is one
+  //fork-join task in the parallel mode
+  private static final int SEGMENT = 1 << 15;
+
   String message;
-  int size, determinant;
-  Matrix scalar, shift, inverse;
+  int size;
+  HillKey key; //scalar, shift, inverse and determinant (mod 26)
   boolean enciphered;
 
   private final String decipherFailed =
@@ -26,75 +46,90 @@ public class HillCipher{
 
   //accepts a String message, a 2-d double array representing the scalar, and
   //a 1-d double array representing the shift.
-  public HillCipher(String Message, double[][] Scalar, double[] Shift)
-    throws NoSquareException{//exception when checking valid & making inverse
+  public HillCipher(String Message, double[][] Scalar, double[] Shift){
 
     message = Message.toUpperCase();
     size = Scalar.length;
     //validScalar tests if the scalar is valid and returns an ID matrix if not
     this.validScalar(Scalar);
 
-    //shift needs to be the right size, and be a n x 1 matrix, but a 1-d
-    //array is a 1 x n matrix, so we need to convert it.
+    //shift needs to be the right size
     if (Shift.length == size) {
-      shift = doubleArrToMatrix(Shift);
+      key = HillKey.of(key.getScalar(), doubleArrToMod(Shift));
     }
-    //the int-int constructor for Matrix assumes an empty (zeroes) 2-d array
-    //which is what we want the default to be
+    //otherwise the shift stays all zeroes, which is what we want the default to be
     else {
       System.out.println("Warning: your shift matrix has size " + Shift.length +
       " but it should have size " + size + ". A substitute zero matrix of " +
       "size " + size + " x 1 wil be used.");
-      shift = new Matrix(size, 1);
     }
     enciphered = false;
   }//end constructor
 
-  /*returns a square Identity Matrix of the given size, ie a matrix I of
-  size n x n, so that for any matrix A of size n x m, IA=AI=A*/
-  private static Matrix IDMatrix(int len){
-    double[][] id = new double[len][len];
-    for (int i=0; i<len; i++) id[i][i] = 1.0;
-    return new Matrix(id);
+  //accepts a String message and a HillKey (which is already valid)
+  public HillCipher(String Message, HillKey Key){
+    message = Message.toUpperCase();
+    size = Key.getSize();
+    key = Key;
+    enciphered = false;
+  }
+
+  //accepts a double array and returns it rounded down to ints mod 26
+  private static int[] doubleArrToMod(double[] a){
+    int[] res = new int[a.length];
+    for (int i=0; i<a.length; i++) res[i] = Math.floorMod((int) a[i], MOD);
+    return res;
+  }
+
+  //ints (mod 26) back to doubles, for the getters
+  private static double[] toDoubles(int[] a){
+    double[] res = new double[a.length];
+    for (int i=0; i<a.length; i++) res[i] = a[i];
+    return res;
+  }
+
+  private static double[][] toDoubles(int[][] a){
+    double[][] res = new double[a.length][];
+    for (int i=0; i<a.length; i++) res[i] = toDoubles(a[i]);
+    return res;
+  }
+
+  //the current shift, or zeroes if there is no key yet
+  private int[] currentShift(){
+    return (key != null && key.getSize() == size) ? key.getShift() : new int[size];
   }
 
-  //accepts a double array and returns an 1 x n Matrix representation of the array
-  private static Matrix doubleArrToMatrix(double[] a){
-    double[][] b = new double[1][a.length];
-    b[0] = a;//n x 1 format
-    return MatrixMathematics.transpose(new Matrix(b));//transpose gets 1 x n format
+  //sets the scalar to the size x size identity matrix (which is its own inverse)
+  private void useIdentity(){
+    key = HillKey.of(ModMatrix.identity(size), currentShift());
   }
 
   /*for a matrix to have an inverse, it must be invertible (det!=0)
   we need an inverse for deciphering
   moreover, because we are in mod 26, the determinant needs to have an
   inverse mod 26 (ie GCD(det, 26)=1) */
-  public void validScalar(double[][] a) throws NoSquareException{
-    if (size!=a[0].length){ //not square
+  public void validScalar(double[][] a){
+    boolean square = a.length == size;
+    for (int i=0; i<a.length && square; i++) square = a[i].length == size;
+    if (!square){ //not square
       System.out.println("Warning: your scalar matrix has dimensions " + size
         + " x " + a[0].length + " and is not square. A substitute " +
         "identity matrix of size " + size + " x " + size + " will be used.");
-      scalar = IDMatrix(size);
-      determinant = 1;
-      inverse = scalar; //the inverse of the ID matrix is itself
+      useIdentity();
     }
     else {
-      Matrix m = new Matrix(a);
-      int det = (int) MatrixMathematics.determinant(m);
-      int mod = 26;
-      //"everything is correct" case
-      if (Functions.GCD(det, mod) == 1) {
-        scalar = m;
-        determinant=det;
-        inverse = MatrixMathematics.inverse(scalar);
+      int[][] m = new int[size][];
+      for (int i=0; i<size; i++) m[i] = doubleArrToMod(a[i]);
+      int det = ModMatrix.determinant(m, MOD);
+      //"everything is correct" case; the key works out (or finds) the inverse
+      if (Functions.GCD(det, MOD) == 1) {
+        key = HillKey.of(m, currentShift());
       }
       else {
         System.out.println("Your scalar is invalid because its determinant"+
         " shares a factor with  26. A substitute identity matrix of size "+
         size+" x "+ size+" will be used.");
-        scalar = IDMatrix(size);
-        determinant = 1;
-        inverse = scalar; //the inverse of the ID matrix is itself
+        useIdentity();
       }//end else
     }//end else
   }
@@ -102,8 +137,7 @@ public class HillCipher{
   //returns a Hill Cipher object whose message is the text contained in the
   //given file, with the given scalar and shift values
   public static HillCipher HCFromText(String fileName, double[][] scalar,
-  double[] shift)
-    throws NoSquareException{//NoSquareException from Constructor call
+  double[] shift){
       String message = Functions.fileToString(fileName);
       return new HillCipher(message, scalar, shift);
   }
@@ -116,25 +150,29 @@ public class HillCipher{
     System.out.println(
       "Warning: changing size will erase current scalar and shift");
     size = newSize;
-    scalar = IDMatrix(size);
-    shift = new Matrix(size, 1);
+    key = HillKey.identity(size);
   }
-  public double[][] getScalar(){return scalar.getValues();}
-  public void setScalar(double[][] newScalar) throws NoSquareException{
+  //the scalar, rounded down mod 26
+  public double[][] getScalar(){return toDoubles(key.getScalar());}
+  public void setScalar(double[][] newScalar){
     validScalar(newScalar);//updates inverse and determinant if needed
   }
-  public int getDeterminant(){return determinant;}
-  public double[][] getInverse(){return inverse.getValues();}
+  //determinant of the scalar, mod 26
+  public int getDeterminant(){return key.getDeterminant();}
+  //the inverse of the scalar mod 26 (whole numbers, no fractions)
+  public double[][] getInverse(){return toDoubles(key.getInverse());}
   //NO setInverse or setDeterminant because they are dependent on scalar
-  //for getShift, we need to transpose from a n x 1 matrix to a 1 x n array
-  public double[] getShift(){
-    double[][] res = MatrixMathematics.transpose(shift).getValues();
-    return res[0]; //the values are stored as a double[] in the first index
-  }
+  public double[] getShift(){return toDoubles(key.getShift());}
   public void setShift(double[] newShift){
-    if (newShift.length==size) shift = doubleArrToMatrix(newShift);
+    if (newShift.length==size)
+      key = HillKey.of(key.getScalar(), doubleArrToMod(newShift));
     else System.out.println("setShift failed. Wrong size.");
   }
+  public HillKey getKey(){return key;}
+  public void setKey(HillKey newKey){
+    key = newKey;
+    size = newKey.getSize();
+  }
   public boolean isEnciphered(){return enciphered;}
   public void setEnciphered(boolean newEnciphered){enciphered = newEnciphered;}
   //end getters & setters-------------------------------------------------------
@@ -142,139 +180,206 @@ public class HillCipher{
   //a String representation of the HillCipher object
   //gives the message, size, scalar, shift, and enciphered status
   public String toString(){
-    String s = message + "\n" + "Matrix sizes: " + size + "\nScalar:\n" +
-      scalar + "\nShift:\n" + shift + "\nDeterminant: "+ determinant +
+    String s = message + "\n" + "Matrix sizes: " + size + "\n" + key +
       "\nEnciphered? " + enciphered;
     return s;
   }
 
-  //A mod method that accepts a double and an integer mod, converts the double
-  //to an int, and returns the int's least *POSITIVE* residue
-  private static int betterMod(double n, int mod){
-    int k = ((int) n)%mod;
-    if (k<0) return k+mod;
-    return k;//implicit else
+  //does body(s) for every segment s in [lo, hi), splitting in half to fork
+  private static class Segments extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    private final int lo, hi;
+    private final IntConsumer body;
+
+    Segments(int myLo, int myHi, IntConsumer myBody){
+      lo = myLo;
+      hi = myHi;
+      body = myBody;
+    }
+
+    protected void compute(){
+      if (hi - lo <= 1) {
+        for (int s=lo; s<hi; s++) body.accept(s);
+      }
+      else {
+        int mid = (lo + hi) / 2;
+        invokeAll(new Segments(lo, mid, body), new Segments(mid, hi, body));
+      }
+    }
+  }//end Segments
+
+  //does body(s) for every segment s, in parallel on pool (or one at a time
+  //on this thread if pool is null or only has one thread)
+  private static void forEachSegment(int numSegments, IntConsumer body,
+    ForkJoinPool pool){
+    if (pool == null || pool.getParallelism() <= 1 || numSegments <= 1) {
+      for (int s=0; s<numSegments; s++) body.accept(s);
+    }
+    else pool.invoke(new Segments(0, numSegments, body));
   }
 
-  /*zero parameter helper method for encipher and decipher
-  reads off the (alpha) characters in the message and stores them in a Matrix
-  object. If the message is not enciphered, it enciphers the characters
-  and if the message is enciphered, deciphers the characters, using the
-  respective encipher decipher functions.
+  /*helper method for encipher and decipher
+  reads off the (alpha) characters in the message and transforms them all at
+  once: the letters are packed into one size x (number of blocks) matrix P,
+  stored column major in an int[] so each block is one column, and C=AP+K is
+  done for every column in cache-blocked passes (ModMatrix.mulAddColumns).
+  If the message is not enciphered, it enciphers the blocks and if the message
+  is enciphered, deciphers them, using the respective encipher decipher
+  functions. With a pool, every step is split into segments done in parallel;
+  with null, it all happens on this thread.
   returns the en/de-ciphered string but does not overwrite message*/
-  private String applyTransformation() throws IllegalDimensionException{
-    String newMessage = "", letters = Functions.getLetters(),
-          extraStr = "*_"; //extraStr is for controlling extra chars
-    int count = 0, total = message.length(), //for checking if done
-      index, //index helps to see if char is a letter
-      n=0; //n is num letters in this set already
-    //letsArr contains set of letters to be enciphered
-    double[] letsArr = new double[size];
-    //letsMatrix=matrix representation of letsArr, result=transformed letsMatrix
-    Matrix letsMatrix, result;
-
-    /*used in decipher
-    here, we first multiply the inverse of scalar by "determinant" to transform
-    the elts into whole numbers again. However, we need to "undo" this
-    multiplication, so we multiply by the determinant's inverse mod 26, "inv"
-    this leaves us with the equivalent inverse, but with whole numbers,
-    which are needed for deciphering*/
-    double inv = (double) Functions.getInverseMod((int) determinant, 26);
-    Matrix specialInverse =
-      inverse.multiplyByConstant(determinant).multiplyByConstant(inv);
-
-    //enough setup, on to ciphers!
-    while (count < total){//while there is more of the message left
-      while (n<size && count < total){//while more letters to add to set
-        //if we are at a letter, letters.indexOf() will be >= 0
-        index = letters.indexOf(message.charAt(count));
-        if (index >= 0) {//if is a letter, add to the array
-          letsArr[n] = (double) index; //double b/c matrices use doubles
-          n++;//increment chars processed
-        }//end if letter
-        count++;//increment total chars seen, regardless of letter or not
-      }//end while n<size
-      //now letsArr is full,
-      letsMatrix = doubleArrToMatrix(letsArr);//these are our letters
-
-      //Encipher and Decipher functions are fairly different
-
-      if (enciphered)//don't do encipher, ie do DECIPHER with P=inv(A)*(C-K);
-      //specialInverse = inv(A), letsMatrix=C, shift=K
-        result = MatrixMathematics.multiply(specialInverse,//inv(A)*...
-          MatrixMathematics.subtract(letsMatrix, shift));//C-K
-      //encipher part; encipher with C=AP+K; letsMatrix=P, scalar=A, shift=K
-      else result = MatrixMathematics.add(//+ section
-        MatrixMathematics.multiply(scalar, letsMatrix),//A*P
-        shift);//+K
-
-      //now convert result to text;
-      //first put nums back into an array for iteration; overwriting, it's fine
-      letsArr = MatrixMathematics.transpose(result).getValues()[0];
-
-      //transfer over characters. note: intentionally adds "leftover" chars
-      if (n!=0){//we don't want to transfer over an empty array/all extra chars
-        for (int i=0; i<size; i++){//convert to new message
-          newMessage=newMessage+letters.charAt(betterMod(letsArr[i], 26));
+  private String applyTransformation(ForkJoinPool pool){
+    String extraStr = "*_"; //old ciphertext's marker for each extra char
+    Alphabet letters = Alphabet.ENGLISH; //table lookups, ignores case
+    String msg = message;
+    int total = msg.length();
+
+    /*Encipher is C=AP+K. Decipher is P=inv(A)(C-K) = inv(A)C + (-inv(A)K),
+    which is the same kind of step with inv(A) as the scalar and -inv(A)K as
+    the shift (the HillKey has both ready), so both use the same multiply*/
+    HillKey hk = key;
+    boolean decipher = enciphered;
+
+    /*when deciphering, the header says how many deciphered letters to keep
+    (see "Handling extra chars" below). Old ciphertext has no header, but ends
+    with one extraStr for each extra char instead, so count those*/
+    int begin = 0, keep = -1;
+    if (enciphered) {
+      begin = headerLength(msg);
+      if (begin > 0) keep = Integer.parseInt(msg.substring(1, begin-1));
+      else {
+        int numRemove = 0;
+        while (total >= 2 && msg.startsWith(extraStr, total-2)) {
+          total = total - 2; //don't bother reading the markers as punctuation
+          numRemove++;
         }
+        keep = -numRemove - 1; //fixed up below, once the letters are counted
       }
+    }
 
-      /*Handling extra chars
-      If size does not divide message.length(), we will have no less than one
-      leftover space which is factored into the encipher Matrix, no matter how
-      we represent this extra space. Because it is involved in encipher's
-      Matrix multiplication, we need it for the decipher as well. However,
-      we also need to be able to tell how many extra chars are at the end of
-      the ciphertext, to omit them from the final deciphered message.
-      Hence for every "leftover"/extra character added in encipher, we also add
-      a symbol at the end of the string, allowing us to count the "extra
-      characters" and remove them
-      */
-      if (count==total){//end of message
-        if (enciphered){//if deciphering, need to remove chars
-        int numRemove=0;
-        boolean hasExtra = message.contains(extraStr);
-        while (hasExtra){
-          //we know this sequence is at the end of the message, so remove it
-          message = message.substring(0, message.length()-2);
-          hasExtra = message.contains(extraStr);
-          numRemove++;//increment number of chars to remove
-        }//end while, remove extra chars
-        newMessage=newMessage.substring(0, newMessage.length()-numRemove);
-      }//end if enciphered
-
-      else{//enciphering
-        int extras = size-n;//number of extra chars; extraStr symbol
-        for (int i=0; i<extras; i++) newMessage = newMessage + extraStr;
+    /*read off the letters. Pass 1 counts the letters in each segment of the
+    message, so pass 2 knows where in p each segment's letters go*/
+    int numSegs = (total - begin + SEGMENT - 1) / SEGMENT, from = begin,
+      end = total;
+    int[] start = new int[numSegs+1];
+    forEachSegment(numSegs, s -> {
+      int n = 0;
+      for (int i=from+s*SEGMENT; i<Math.min(end, from+(s+1)*SEGMENT); i++)
+        if (letters.indexOf(msg.charAt(i)) >= 0) n++;
+      start[s+1] = n;
+    }, pool);
+    for (int s=0; s<numSegs; s++) start[s+1] = start[s+1] + start[s];
+
+    //p is padded out to a whole number of blocks
+    int numLetters = start[numSegs], blocks = (numLetters + size - 1) / size,
+      extras = blocks*size - numLetters, //number of extra chars in the last block
+      full = (extras == 0) ? blocks : blocks-1; //blocks with no extra chars
+    int[] p = new int[blocks*size], c = new int[p.length];
+    forEachSegment(numSegs, s -> {
+      int out = start[s], index;
+      for (int i=from+s*SEGMENT; i<Math.min(end, from+(s+1)*SEGMENT); i++){
+        index = letters.indexOf(msg.charAt(i));
+        if (index >= 0) {p[out] = index; out++;}
       }
-    }//end if count==total
+    }, pool);
+
+    //enough setup, on to ciphers! Each segment of blocks goes straight from
+    //p to cipher letters in newMessage (after the header, if enciphering)
+    String header = enciphered ? "" : "[" + numLetters + "]";
+    int off = header.length();
+    char[] newMessage = new char[off + c.length];
+    header.getChars(0, off, newMessage, 0);
+    int cols = Math.max(1, SEGMENT / size), colSegs = (full + cols - 1) / cols;
+    forEachSegment(colSegs, s -> {
+      int j0 = s*cols, n = Math.min(full, j0+cols) - j0;
+      hk.transformColumns(decipher, p, j0*size, c, j0*size, n);
+      for (int i=j0*size; i<(j0+n)*size; i++)
+        newMessage[off+i] = letters.charAt(c[i]);
+    }, pool);
+    if (extras > 0) {
+      //note: intentionally adds "leftover" chars. The empty spots of the last
+      //block hold the previous block's result (0 if there was no previous
+      //block), like they always have
+      int last = full*size;
+      for (int i=size-extras; i<size; i++)
+        p[last+i] = (full > 0) ? c[last-size+i] : 0;
+      hk.transformBlock(decipher, p, last, c, last);
+      for (int i=last; i<c.length; i++) newMessage[off+i] = letters.charAt(c[i]);
+    }
 
+    /*Handling extra chars
+    If size does not divide the number of letters, we will have no less than
+    one leftover space which is factored into the encipher Matrix, no matter
+    how we represent this extra space. Because it is involved in encipher's
+    Matrix multiplication, we need it for the decipher as well. However,
+    we also need to be able to tell how many extra chars are at the end of
+    the ciphertext, to omit them from the final deciphered message.
+    Hence encipher starts the ciphertext with the number of real letters,
+    and decipher keeps only that many (one parse, no matter how long the
+    message is)
+    */
+    if (!enciphered) return new String(newMessage);
+    if (keep < 0) keep = Math.max(0, c.length + keep + 1); //old "*_" format
+    return new String(newMessage, 0, Math.min(keep, c.length));
+  }
 
-    n=0;//reset n
-    }//end while more letters
-    return newMessage;
+  /*if msg starts with a ciphertext header "[n]" (n = number of letters),
+  returns the length of the header, otherwise 0*/
+  private static int headerLength(String msg){
+    if (msg.isEmpty() || msg.charAt(0) != '[') return 0;
+    int i = 1;
+    while (i < msg.length() && i <= 10 && Character.isDigit(msg.charAt(i))) i++;
+    if (i == 1 || i >= msg.length() || msg.charAt(i) != ']') return 0;
+    if (Long.parseLong(msg.substring(1, i)) > Integer.MAX_VALUE) return 0;
+    return i+1;
   }
 
-  /*applies Hill Cipher and returns the transformed message
-  IllegalDimensionException comes from applyTransformation, which uses
-  MatrixMathematics.multiply(matrices)*/
-  public String encipher() throws IllegalDimensionException{
+  //applies Hill Cipher and returns the transformed message
+  public String encipher(){
     //only encipher if not already enciphered
     if (enciphered) System.out.println(encipherFailed);
     else {
-      message = this.applyTransformation();//actually does the encipher
+      message = this.applyTransformation(null);//actually does the encipher
+      enciphered = true;
+    }
+    return message;
+  }
+
+  //same as encipher, with the blocks split up over the common fork-join pool
+  public String encipherParallel(){
+    return encipherParallel(ForkJoinPool.commonPool());
+  }
+
+  //same as encipher, with the blocks split up over the given pool
+  public String encipherParallel(ForkJoinPool pool){
+    if (enciphered) System.out.println(encipherFailed);
+    else {
+      message = this.applyTransformation(pool);
       enciphered = true;
     }
     return message;
   }
 
-  /*undos the Hill Cipher and returns the deciphered message
-  IllegalDimensionException comes from applyTransformation, which uses
-  MatrixMathematics.multiply(matrices)*/
-  public String decipher() throws IllegalDimensionException{
+  //undos the Hill Cipher and returns the deciphered message
+  public String decipher(){
     //only try to decipher an enciphered message
     if (enciphered) {
-      message = this.applyTransformation();//actually does the decipher
+      message = this.applyTransformation(null);//actually does the decipher
+      enciphered = false;
+    }
+    else System.out.println(decipherFailed);
+    return message;
+  }
+
+  //same as decipher, with the blocks split up over the common fork-join pool
+  public String decipherParallel(){
+    return decipherParallel(ForkJoinPool.commonPool());
+  }
+
+  //same as decipher, with the blocks split up over the given pool
+  public String decipherParallel(ForkJoinPool pool){
+    if (enciphered) {
+      message = this.applyTransformation(pool);
       enciphered = false;
     }
     else System.out.println(decipherFailed);
@@ -292,11 +397,9 @@ public class HillCipher{
             shiftID = {0., 0., 0., 0.},
             shift2 = {1.,1.};
 
-    try{
-      HillCipher henry = HCFromText(text, scalar, shift3);
-      System.out.println(henry.encipher());
-      System.out.println(henry.decipher());
-    }    catch(Exception e){System.out.println(e);}
+    HillCipher henry = HCFromText(text, scalar, shift3);
+    System.out.println(henry.encipher());
+    System.out.println(henry.decipher());
 
   }
 }
@@ -0,0 +1,170 @@
+/*A HillCipher key: the scalar A and the shift K (mod 26), with everything
+deciphering needs worked out once when the key is made:
+  - the determinant of A and its inverse inv(A) (mod 26)
+  - the decipher shift -inv(A)K, so deciphering P = inv(A)C + (-inv(A)K) is
+    the same kind of step as enciphering C = AP + K
+A HillKey never changes after it is made, so one key can be shared by any
+number of ciphers and threads. of() keeps the most recently used keys in a
+cache by their contents, so making a cipher with a key that was already
+used doesn't redo any of the work.
+
+random() makes a random valid key of any size: fill a matrix with random
+numbers mod 26 and keep it if the determinant is odd and not a multiple of
+13 (a couple of tries on average).*/
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class HillKey{
+
+  private static final int MOD = 26;
+  //number of keys kept in the cache; the least recently used one is dropped
+  private static final int MAX_KEYS = 256;
+
+  //the contents of a key (size, scalar rows, shift) as one array, for the cache
+  private static final class Contents{
+    private final int[] vals;
+    Contents(int[] myVals){vals = myVals;}
+    public boolean equals(Object o){
+      return o instanceof Contents && Arrays.equals(vals, ((Contents) o).vals);
+    }
+    public int hashCode(){return Arrays.hashCode(vals);}
+  }
+
+  //access ordered LinkedHashMap, so it works as a small LRU cache
+  private static final Map<Contents, HillKey> cache =
+    new LinkedHashMap<Contents, HillKey>(16, 0.75f, true){
+      protected boolean removeEldestEntry(Map.Entry<Contents, HillKey> e){
+        return size() > MAX_KEYS;
+      }
+    };
+
+  private final int size, determinant;
+  private final int[][] scalar, inverse;
+  private final int[] shift, decipherShift;
+
+  //makes the key; scalar has to be invertible mod 26 (see of())
+  private HillKey(int[][] myScalar, int[] myShift){
+    size = myScalar.length;
+    scalar = ModMatrix.reduce(myScalar, MOD);
+    shift = ModMatrix.reduce(myShift, MOD);
+    determinant = ModMatrix.determinant(scalar, MOD);
+    inverse = ModMatrix.inverse(scalar, MOD);
+    decipherShift = ModMatrix.multiply(inverse, shift, MOD);
+    for (int i=0; i<size; i++) decipherShift[i] = (MOD - decipherShift[i]) % MOD;
+  }
+
+  /*returns the (cached) key with this scalar and shift, or null (with a
+  warning) if the scalar isn't square with an inverse mod 26 or the shift is
+  the wrong size. Entries can be any ints; they are reduced mod 26*/
+  public static HillKey of(int[][] scalar, int[] shift){
+    if (!ModMatrix.isInvertible(scalar, MOD) || shift.length != scalar.length) {
+      System.out.println("Warning: not a valid Hill key (the scalar needs an " +
+        "inverse mod 26 and the shift needs one entry per row).");
+      return null;
+    }
+    int n = scalar.length;
+    int[] vals = new int[1 + n*n + n];
+    vals[0] = n;
+    for (int i=0; i<n; i++){
+      for (int j=0; j<n; j++) vals[1 + i*n + j] = Math.floorMod(scalar[i][j], MOD);
+      vals[1 + n*n + i] = Math.floorMod(shift[i], MOD);
+    }
+    Contents key = new Contents(vals);
+    synchronized (cache){
+      HillKey k = cache.get(key);
+      if (k == null) {
+        k = new HillKey(scalar, shift);
+        cache.put(key, k);
+      }
+      return k;
+    }
+  }
+
+  //the size x size identity scalar with no shift (enciphering does nothing)
+  public static HillKey identity(int size){
+    return of(ModMatrix.identity(size), new int[size]);
+  }
+
+  //a random valid key of the given size (from a SecureRandom)
+  public static HillKey random(int size){
+    return random(size, new SecureRandom());
+  }
+
+  /*a random valid key of the given size, by rejection sampling: random
+  matrices are thrown out until one's determinant has an inverse mod 26.
+  About 1 in 3 (2x2) to 1 in 4 (big) random matrices work. Random keys are
+  not put in the cache*/
+  public static HillKey random(int size, Random rnd){
+    int[][] a = new int[size][size];
+    int[] k = new int[size];
+    do {
+      for (int i=0; i<size; i++)
+        for (int j=0; j<size; j++) a[i][j] = rnd.nextInt(MOD);
+    } while (!hasInverse(ModMatrix.determinant(a, MOD)));
+    for (int i=0; i<size; i++) k[i] = rnd.nextInt(MOD);
+    return new HillKey(a, k);
+  }
+
+  //a determinant has an inverse mod 26 iff it is odd and not a multiple of 13
+  private static boolean hasInverse(int det){
+    return (det & 1) == 1 && det != 13;
+  }
+
+  //getters (copies, so the key can't be changed)-------------------------------
+  public int getSize(){return size;}
+  public int getDeterminant(){return determinant;}
+  public int[][] getScalar(){return ModMatrix.reduce(scalar, MOD);}
+  public int[][] getInverse(){return ModMatrix.reduce(inverse, MOD);}
+  public int[] getShift(){return shift.clone();}
+  //end getters-----------------------------------------------------------------
+
+  /*enciphers (C = AP + K) or deciphers (P = inv(A)C - inv(A)K) cols blocks,
+  stored column major in p from pOff, into c from cOff (see
+  ModMatrix.mulAddColumns). Entries of p must be 0 to 25*/
+  public void transformColumns(boolean decipher, int[] p, int pOff, int[] c,
+    int cOff, int cols){
+    if (decipher) ModMatrix.mulAddColumns(inverse, decipherShift, p, pOff, c,
+      cOff, cols, MOD);
+    else ModMatrix.mulAddColumns(scalar, shift, p, pOff, c, cOff, cols, MOD);
+  }
+
+  //same as transformColumns for just one block
+  public void transformBlock(boolean decipher, int[] p, int pOff, int[] c,
+    int cOff){
+    if (decipher) ModMatrix.mulAdd(inverse, decipherShift, p, pOff, c, cOff, MOD);
+    else ModMatrix.mulAdd(scalar, shift, p, pOff, c, cOff, MOD);
+  }
+
+  //two keys are equal if they have the same scalar and shift
+  public boolean equals(Object o){
+    if (!(o instanceof HillKey)) return false;
+    HillKey k = (HillKey) o;
+    return Arrays.deepEquals(scalar, k.scalar) && Arrays.equals(shift, k.shift);
+  }
+
+  public int hashCode(){
+    return 31 * Arrays.deepHashCode(scalar) + Arrays.hashCode(shift);
+  }
+
+  public String toString(){
+    return "Scalar:\n" + ModMatrix.toString(scalar) + "\nShift:\n" +
+      ModMatrix.toString(new int[][] {shift}) + "\nDeterminant: " + determinant;
+  }
+
+  public static void main(String[] args){
+    Random rnd = new Random(1);
+    for (int n=2; n<=5; n++){
+      long start = System.nanoTime();
+      HillKey k = random(n, rnd);
+      System.out.println(n + "x" + n + " key in " +
+        (System.nanoTime()-start)/1000 + " us\n" + k + "\n");
+    }
+    int[][] a = {{3, 3}, {2, 5}};
+    System.out.println("cached: " + (of(a, new int[2]) == of(a, new int[] {26, 0})));
+  }
+
+}//end class
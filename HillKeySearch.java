@@ -0,0 +1,293 @@
+/*Breaks a HillCipher (finds its scalar A and shift K) two ways.
+
+Known plaintext: if some plaintext and its ciphertext are known, every block
+gives C_j = A P_j + K. Subtracting one block from n others gets rid of K:
+C_j - C_0 = A (P_j - P_0), so if the n differences P_j - P_0 make an
+invertible matrix D (mod 26), then A = (differences of C) inv(D) and
+K = C_0 - A P_0. Only n+1 blocks are needed (n if the shift is 0).
+
+Ciphertext only: deciphering is P = BC + L with B = inv(A) and L = -inv(A)K,
+and plaintext letter i of every block only depends on ROW i of B and on L_i.
+So instead of trying every whole key (26^(n*n+n) of them, about 3.1*10^8 for
+2x2), every possible row (b, l) is tried on its own: 26^n rows b, each
+scored against English letter frequencies (FrequencyAnalysis.chiSquared)
+for all 26 l at once, since l just moves the counts over. That's only
+17,576 rows for a 3x3 key. The best few rows are then put together in every
+order into whole keys, and each invertible one is scored with a bigram
+fitness (how English the pairs of letters look, trained on
+frankensteinLONG.txt). Both steps are done in parallel.*/
+
+import java.util.stream.IntStream;
+
+public class HillKeySearch{
+
+  private static final int MOD = 26;
+  //number of best rows that get put together into whole keys
+  public static final int TOP_ROWS = 10;
+  //letters of ciphertext used for the scores (plenty for English stats)
+  public static final int SAMPLE_LETTERS = 6000;
+  //blocks tried when looking for invertible differences (known plaintext)
+  private static final int MAX_BLOCKS = 40;
+
+  /*one candidate key. The scalar and shift are the ENCIPHER key, ie what
+  the message was enciphered with, like HillCipher's*/
+  public static class Result{
+    private final int[][] scalar;
+    private final int[] shift;
+    private final double fitness;
+
+    Result(int[][] myScalar, int[] myShift, double myFitness){
+      scalar = myScalar;
+      shift = myShift;
+      fitness = myFitness;
+    }
+
+    public int[][] getScalar(){return ModMatrix.reduce(scalar, MOD);} //copy
+    public int[] getShift(){return shift.clone();}
+    //average log probability of the plaintext's bigrams; bigger is better
+    public double getFitness(){return fitness;}
+
+    //this key as a HillKey
+    public HillKey getKey(){return HillKey.of(scalar, shift);}
+
+    //deciphers the given ciphertext with this key
+    public String decipher(String cipherText){
+      HillCipher hc = new HillCipher(cipherText, getKey());
+      hc.setEnciphered(true);
+      return hc.decipher();
+    }
+
+    public String toString(){
+      return "scalar:\n" + ModMatrix.toString(scalar) + "\nshift: " +
+        java.util.Arrays.toString(shift) + ", fitness: " +
+        String.format("%.3f", fitness);
+    }
+  }//end Result
+
+  //log probability of each bigram (index 26*first + second), made the first
+  //time it is needed
+  private static class Bigrams{
+    static final double[] LOG = train();
+
+    /*counts the bigrams of frankensteinLONG.txt (every count starts at 1 so
+    none are impossible). Without the file, uses pairs of single letter
+    frequencies from FrequencyAnalysis instead*/
+    private static double[] train(){
+      double[] log = new double[MOD*MOD];
+      if (new TextFile("frankensteinLONG.txt").exists()) {
+        int[] letters = Alphabet.ENGLISH.indices(
+          Functions.fileToString("frankensteinLONG.txt"));
+        long[] counts = new long[MOD*MOD];
+        java.util.Arrays.fill(counts, 1);
+        for (int i=0; i+1<letters.length; i++)
+          counts[letters[i]*MOD + letters[i+1]]++;
+        double total = letters.length - 1 + MOD*MOD;
+        for (int i=0; i<log.length; i++) log[i] = Math.log(counts[i] / total);
+      }
+      else {
+        int[] eng = FrequencyAnalysis.engFreqArray();
+        double sum = java.util.Arrays.stream(eng).sum();
+        for (int i=0; i<log.length; i++)
+          log[i] = Math.log(Math.max(eng[i/MOD], 1) / sum) +
+            Math.log(Math.max(eng[i%MOD], 1) / sum);
+      }
+      return log;
+    }
+  }//end Bigrams
+
+  /*bigram fitness of len letters (as positions) starting at from: the
+  average log probability of each pair. English text scores around -5.3;
+  random letters around -8.2*/
+  public static double fitness(int[] letters, int from, int len){
+    if (len < 2) return Double.NEGATIVE_INFINITY;
+    double[] log = Bigrams.LOG;
+    double sum = 0;
+    for (int i=from; i+1<from+len; i++) sum = sum + log[letters[i]*MOD + letters[i+1]];
+    return sum / (len-1);
+  }
+
+  //known plaintext-----------------------------------------------------------
+
+  /*finds the size x size key that enciphers plainText into cipherText (the
+  letters have to line up from the start, anything else is ignored). Returns
+  null (with a message) if the blocks don't pin down a key*/
+  public static Result knownPlaintext(String plainText, String cipherText,
+    int size){
+    int[] p = Alphabet.ENGLISH.indices(plainText),
+      c = Alphabet.ENGLISH.indices(cipherText);
+    int blocks = Math.min(p.length, c.length) / size;
+
+    //general key: n differences from block "base"; then assume the shift is 0
+    Result res = solve(p, c, blocks, size, true);
+    if (res == null) res = solve(p, c, blocks, size, false);
+    if (res == null) System.out.println("The known blocks don't determine a " +
+      "key. Try more (or different) plaintext.");
+    return res;
+  }
+
+  /*looks for size blocks (after a base block, if withShift) whose plaintext
+  columns (minus the base's) make an invertible matrix, and checks the key
+  they give against every known block*/
+  private static Result solve(int[] p, int[] c, int blocks, int n,
+    boolean withShift){
+    int m = Math.min(blocks, MAX_BLOCKS);
+    if (m < (withShift ? n+1 : n)) return null;
+    int[] pick = new int[n];
+    for (int i=0; i<n; i++) pick[i] = i;
+    int[][] dp = new int[n][n], dc = new int[n][n];
+
+    while (true){
+      for (int base=0; base<(withShift ? m : 1); base++){
+        boolean used = false;
+        for (int i=0; i<n; i++) used = used || pick[i] == base;
+        if (used && withShift) continue; //base can't be one of the picks
+        //columns are the picked blocks, minus the base block if withShift
+        for (int col=0; col<n; col++){
+          for (int t=0; t<n; t++){
+            int pb = withShift ? p[base*n+t] : 0, cb = withShift ? c[base*n+t] : 0;
+            dp[t][col] = Math.floorMod(p[pick[col]*n+t] - pb, MOD);
+            dc[t][col] = Math.floorMod(c[pick[col]*n+t] - cb, MOD);
+          }
+        }
+        if (!ModMatrix.isInvertible(dp, MOD)) continue;
+        int[][] a = ModMatrix.multiply(dc, ModMatrix.inverse(dp, MOD), MOD);
+        int[] k = new int[n];
+        if (withShift) {
+          int[] ap = new int[n];
+          ModMatrix.mulAdd(a, k, p, base*n, ap, 0, MOD);
+          for (int t=0; t<n; t++) k[t] = Math.floorMod(c[base*n+t] - ap[t], MOD);
+        }
+        if (ModMatrix.isInvertible(a, MOD) && fits(a, k, p, c, blocks))
+          return new Result(a, k, fitness(p, 0, Math.min(p.length, SAMPLE_LETTERS)));
+      }//end for base
+      //next set of picked blocks (the combinations of n out of m, in order)
+      int i = n-1;
+      while (i >= 0 && pick[i] == m - n + i) i--;
+      if (i < 0) break;
+      pick[i]++;
+      for (int j=i+1; j<n; j++) pick[j] = pick[j-1] + 1;
+    }
+    return null;
+  }
+
+  //true if C = AP + K for every one of the known blocks
+  private static boolean fits(int[][] a, int[] k, int[] p, int[] c, int blocks){
+    int n = k.length;
+    int[] res = new int[n];
+    for (int j=0; j<blocks; j++){
+      ModMatrix.mulAdd(a, k, p, j*n, res, 0, MOD);
+      for (int t=0; t<n; t++) if (res[t] != c[j*n+t]) return false;
+    }
+    return true;
+  }
+
+  //ciphertext only-----------------------------------------------------------
+
+  /*returns the most likely size x size key for the ciphertext (with a shift
+  or without). 2x2 and 3x3 take well under a second; every size up is 26
+  times as many rows to try*/
+  public static Result search(String cipherText, int size){
+    int[] all = Alphabet.ENGLISH.indices(cipherText);
+    int blocks = Math.min(all.length, SAMPLE_LETTERS) / size;
+    if (blocks < 2) {
+      System.out.println("There aren't enough letters to analyze.");
+      return null;
+    }
+    int[] c = java.util.Arrays.copyOf(all, blocks*size);
+    int numRows = (int) Math.pow(MOD, size);
+
+    //step 1: score every row b (for the best l of each) in parallel
+    double[] rowScore = new double[numRows];
+    int[] rowShift = new int[numRows];
+    IntStream.range(1, numRows).parallel().forEach(r -> {//row 0 is all 0s
+      int[] b = digits(r, size), counts = new int[MOD];
+      for (int j=0; j<blocks; j++){
+        int y = 0;
+        for (int t=0; t<size; t++) y = y + b[t]*c[j*size+t];
+        counts[y % MOD]++;
+      }
+      //plaintext x = y + l, so the count of x is counts[x - l]
+      double best = Double.MAX_VALUE, chi;
+      for (int l=0; l<MOD; l++){
+        chi = FrequencyAnalysis.chiSquared(counts, 1, -l);
+        if (chi < best) {best = chi; rowShift[r] = l;}
+      }
+      rowScore[r] = best;
+    });
+    rowScore[0] = Double.MAX_VALUE;
+    int[] top = IntStream.range(0, numRows).boxed()
+      .sorted((x, y) -> Double.compare(rowScore[x], rowScore[y]))
+      .limit(TOP_ROWS).mapToInt(Integer::intValue).toArray();
+
+    //step 2: every ordering of size of the top rows is a key; score with bigrams
+    int t = top.length, combos = (int) Math.pow(t, size);
+    double[] fit = new double[combos];
+    IntStream.range(0, combos).parallel().forEach(q -> {
+      int[] choice = digits(q, size, t);
+      int[][] b = new int[size][];
+      int[] l = new int[size];
+      for (int i=0; i<size; i++){
+        b[i] = digits(top[choice[i]], size);
+        l[i] = rowShift[top[choice[i]]];
+      }
+      if (!ModMatrix.isInvertible(b, MOD)) {fit[q] = Double.NEGATIVE_INFINITY; return;}
+      int[] plain = new int[c.length];
+      ModMatrix.mulAddColumns(b, l, c, 0, plain, 0, blocks, MOD);
+      fit[q] = fitness(plain, 0, plain.length);
+    });
+    int best = 0;
+    for (int q=1; q<combos; q++) if (fit[q] > fit[best]) best = q;
+    if (fit[best] == Double.NEGATIVE_INFINITY) {
+      System.out.println("No invertible key was found.");
+      return null;
+    }
+
+    //turn the decipher key (B, L) back into the encipher key A = inv(B), K = -AL
+    int[] choice = digits(best, size, t);
+    int[][] b = new int[size][];
+    int[] l = new int[size];
+    for (int i=0; i<size; i++){
+      b[i] = digits(top[choice[i]], size);
+      l[i] = rowShift[top[choice[i]]];
+    }
+    int[][] a = ModMatrix.inverse(b, MOD);
+    int[] k = ModMatrix.multiply(a, l, MOD);
+    for (int i=0; i<size; i++) k[i] = (MOD - k[i]) % MOD;
+    return new Result(a, k, fit[best]);
+  }
+
+  //the size base 26 digits of r, lowest first (a row of a key)
+  private static int[] digits(int r, int size){
+    return digits(r, size, MOD);
+  }
+
+  //the size base "base" digits of r, lowest first
+  private static int[] digits(int r, int size, int base){
+    int[] d = new int[size];
+    for (int i=0; i<size; i++) {d[i] = r % base; r = r / base;}
+    return d;
+  }
+
+  public static void main(String[] args){
+    String text = Functions.fileToString("frankensteinCh1.txt");
+    double[][] scalar2 = {{3., 3.}, {2., 5.}},
+      scalar3 = {{1., 2., 3.}, {0., 1., 4.}, {5., 6., 0.}};
+    double[] shift2 = {4., 17.}, shift3 = {1., 1., 1.};
+
+    String secret = new HillCipher(text, scalar2, shift2).encipher();
+    long start = System.nanoTime();
+    Result r = search(secret, 2);
+    System.out.println("2x2 search took " + (System.nanoTime()-start)/1000000 +
+      " ms\n" + r + "\n" + r.decipher(secret).substring(0, 80));
+
+    secret = new HillCipher(text, scalar3, shift3).encipher();
+    start = System.nanoTime();
+    r = search(secret, 3);
+    System.out.println("3x3 search took " + (System.nanoTime()-start)/1000000 +
+      " ms\n" + r + "\n" + r.decipher(secret).substring(0, 80));
+
+    r = knownPlaintext(text.substring(0, 60), secret, 3);
+    System.out.println("known plaintext (60 chars):\n" + r);
+  }
+
+}//end class
@@ -0,0 +1,93 @@
+/*A dense table of inverses mod some small modulus, ie inv[n] is the x with
+nx=1(mod "mod"), or 0 if n has no inverse (same convention as
+Functions.getInverseMod). The table is made once per modulus and cached, so
+every cipher that works mod 26 (or mod some small q or q-1) gets its
+inverses with one array lookup.
+
+Only moduli up to MAX_MOD get a table; anything bigger just goes straight to
+the extended Euclidean algorithm in Functions.getInverseMod.*/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class InverseTable{
+
+  //biggest modulus that gets a table (a table is 4*mod bytes)
+  public static final int MAX_MOD = 1 << 16;
+  //number of tables kept at once; the least recently used one is dropped
+  private static final int MAX_TABLES = 64;
+
+  //access ordered LinkedHashMap, so it works as a small LRU cache
+  private static final Map<Integer, InverseTable> cache =
+    new LinkedHashMap<Integer, InverseTable>(16, 0.75f, true){
+      protected boolean removeEldestEntry(Map.Entry<Integer, InverseTable> e){
+        return size() > MAX_TABLES;
+      }
+    };
+
+  private final int mod;
+  private final int[] inv;
+
+  //makes the table for the given modulus (use of() to get a cached one)
+  private InverseTable(int myMod){
+    mod = myMod;
+    inv = new int[mod];
+    if (mod == 1) return; //everything is 0 mod 1
+
+    if (Primality.isPrime(mod)){
+      //for a prime p, p = (p/i)*i + p%i, so inv(i) = -(p/i)*inv(p%i) (mod p)
+      //which fills the whole table in one pass with no gcds at all
+      inv[1] = 1;
+      for (int i=2; i<mod; i++)
+        inv[i] = (int) ((mod - (long) (mod/i) * inv[mod%i] % mod) % mod);
+    }
+    else {
+      //composite: inverses come in pairs, so each Euclid run fills two spots
+      for (int i=1; i<mod; i++){
+        if (inv[i] == 0) {
+          inv[i] = Functions.getInverseMod(i, mod);
+          if (inv[i] != 0) inv[inv[i]] = i;
+        }
+      }//end for
+    }//end else
+  }
+
+  /*returns the (cached) table of inverses mod the given modulus, or null
+  (with a warning) if the modulus is too big or too small for a table*/
+  public static InverseTable of(int mod){
+    if (mod < 1 || mod > MAX_MOD) {
+      System.out.println("Warning: no inverse table for mod " + mod);
+      return null;
+    }
+    synchronized (cache){
+      InverseTable t = cache.get(mod);
+      if (t == null) {
+        t = new InverseTable(mod);
+        cache.put(mod, t);
+      }
+      return t;
+    }
+  }
+
+  /*returns the inverse of n mod "mod" (0 if there is none). Small moduli use
+  the cached table; big ones use Functions.getInverseMod*/
+  public static int inverse(int n, int mod){
+    if (mod >= 1 && mod <= MAX_MOD) return of(mod).get(n);
+    return Functions.getInverseMod(n, mod);
+  }
+
+  //getters---------------------------------------------------------------------
+  public int getMod(){return mod;}
+  //inverse of n (any int, even negative) mod getMod(); 0 if there is none
+  public int get(int n){return inv[Math.floorMod(n, mod)];}
+  //true if n has an inverse, ie GCD(n, mod)=1
+  public boolean hasInverse(int n){return mod == 1 || get(n) != 0;}
+  //end getters-----------------------------------------------------------------
+
+  public static void main(String[] args){
+    InverseTable t = of(26);
+    for (int i=0; i<26; i++) System.out.print(i + ":" + t.get(i) + " ");
+    System.out.println("\ninv(17) mod 3120 = " + inverse(17, 3120));
+  }
+
+}//end class
@@ -0,0 +1,114 @@
+/*Packs letters into blocks for ExpCipher and RSACipher, so one power does
+k letters at once instead of one. A block of k letters is read as a k digit
+number in base 26 (A=0, ..., Z=25), ex. "CAT" = 2*26^2 + 0*26 + 19 = 1371,
+and every block value has to be below the modulus, so k is the biggest
+number with 26^k <= modulus (at least 1).
+
+A's are 0, so "AAB", "AB" and "B" all pack to the number 1. To tell them
+apart, block ciphertext starts with a header token "letters:k" (the total
+number of letters and the block size), ex.
+  "7:3 1371 2208 14"
+is 7 letters in blocks of 3, so the last block is 7-3-3 = 1 letter long.
+Only the last block can be short, and the header says exactly how short.*/
+
+import java.math.BigInteger;
+
+public class LetterBlocks{
+
+  private static final int BASE = 26;
+  private static final BigInteger BIG_BASE = BigInteger.valueOf(BASE);
+
+  //biggest k (at least 1) with 26^k <= modulus, ie k letters always fit
+  public static int blockSize(long modulus){
+    int k = 0;
+    long pow = 1;
+    while (pow <= modulus / BASE) {pow = pow * BASE; k++;}
+    return Math.max(k, 1);
+  }
+
+  //same as above for a BigInteger modulus (ex. an RSAKey's n)
+  public static int blockSize(BigInteger modulus){
+    if (modulus.bitLength() < 63) return blockSize(modulus.longValue());
+    //log_26(modulus) from the bit length, then fix it up by at most one
+    int k = (int) ((modulus.bitLength() - 1) / (Math.log(BASE) / Math.log(2)));
+    while (BIG_BASE.pow(k+1).compareTo(modulus) <= 0) k++;
+    while (k > 1 && BIG_BASE.pow(k).compareTo(modulus) > 0) k--;
+    return k;
+  }
+
+  //the header token for numLetters letters in blocks of k
+  public static String header(int numLetters, int k){
+    return numLetters + ":" + k;
+  }
+
+  /*if the ciphertext starts with a header token, returns {letters, k}.
+  Otherwise (one number per letter, the old format) returns null*/
+  public static int[] readHeader(String cipherText){
+    int start = 0, len = cipherText.length();
+    while (start < len && cipherText.charAt(start) == ' ') start++;
+    int colon = -1, end = start;
+    while (end < len && cipherText.charAt(end) != ' ') {
+      if (cipherText.charAt(end) == ':') colon = end;
+      end++;
+    }
+    if (colon < 0) return null;
+    try {
+      int[] res = {Integer.parseInt(cipherText.substring(start, colon)),
+        Integer.parseInt(cipherText.substring(colon+1, end))};
+      return (res[0] >= 0 && res[1] >= 1) ? res : null;
+    } catch (NumberFormatException e) {return null;}
+  }
+
+  //number of blocks for numLetters letters in blocks of k
+  public static int numBlocks(int numLetters, int k){
+    return (int) ((numLetters + (long) k - 1) / k); //no overflow for big k
+  }
+
+  //the value of len letters (positions 0-25) from off, as a base 26 number
+  //(len has to be 13 or less to fit)
+  public static long pack(int[] letters, int off, int len){
+    long v = 0;
+    for (int i=off; i<off+len; i++) v = v*BASE + letters[i];
+    return v;
+  }
+
+  //same as above for any number of letters
+  public static BigInteger packBig(int[] letters, int off, int len){
+    if (len <= 13) return BigInteger.valueOf(pack(letters, off, len));
+    //BigInteger already reads base 26: digits 0-9 then a-p
+    char[] digits = new char[len];
+    for (int i=0; i<len; i++) digits[i] = Character.forDigit(letters[off+i], BASE);
+    return new BigInteger(new String(digits), BASE);
+  }
+
+  //writes the len letters of a block value into out from outOff (the
+  //inverse of pack)
+  public static void unpack(long value, int len, char[] out, int outOff){
+    for (int i=outOff+len-1; i>=outOff; i--){
+      out[i] = (char) ('A' + Math.floorMod(value, BASE));
+      value = value / BASE;
+    }
+  }
+
+  //same as above for a BigInteger block value
+  public static void unpack(BigInteger value, int len, char[] out, int outOff){
+    if (value.bitLength() < 63) {unpack(value.longValue(), len, out, outOff); return;}
+    String digits = value.toString(BASE);
+    int pad = len - digits.length(); //leading A's (0's) don't show up
+    for (int i=0; i<len; i++){
+      out[outOff+i] = (i < pad) ? 'A' :
+        (char) ('A' + Character.digit(digits.charAt(i-pad), BASE));
+    }
+  }
+
+  public static void main(String[] args){
+    int[] cat = Alphabet.ENGLISH.indices("cat");
+    char[] out = new char[3];
+    unpack(pack(cat, 0, 3), 3, out, 0);
+    System.out.println("CAT = " + pack(cat, 0, 3) + " = " + new String(out));
+    System.out.println("block size for 77: " + blockSize(77) + ", 2^31-1: " +
+      blockSize(Integer.MAX_VALUE) + ", 2^2048: " +
+      blockSize(BigInteger.ONE.shiftLeft(2048)));
+  }
+
+}//end class
@@ -0,0 +1,299 @@
+/*Square matrices of ints mod m, for the Hill Cipher.
+A matrix is just an int[][] (row major, a[row][col]) and a vector is an int[];
+everything here is static, like Functions. All of the results are least
+POSITIVE residues, and nothing is ever a double, so there is no rounding.
+
+The determinant works for any modulus, even one that isn't prime like 26:
+instead of dividing (which needs inverses), rows are reduced against each
+other with the Euclidean algorithm until one pivot is left in each column.
+
+The Hill Cipher almost always uses 2x2 or 3x3 keys, so those sizes have their
+own unrolled versions of determinant, adjugate and mulAdd (the per block
+C = AP + K), which do no loops and no allocation at all.*/
+
+public class ModMatrix{
+
+  //n x n identity matrix
+  public static int[][] identity(int n){
+    int[][] id = new int[n][n];
+    for (int i=0; i<n; i++) id[i][i] = 1;
+    return id;
+  }
+
+  //copy of a with every entry reduced to its least positive residue mod m
+  public static int[][] reduce(int[][] a, int m){
+    int[][] res = new int[a.length][];
+    for (int i=0; i<a.length; i++) res[i] = reduce(a[i], m);
+    return res;
+  }
+
+  //copy of v with every entry reduced mod m
+  public static int[] reduce(int[] v, int m){
+    int[] res = new int[v.length];
+    for (int i=0; i<v.length; i++) res[i] = Math.floorMod(v[i], m);
+    return res;
+  }
+
+  //true if a is n x n for n = a.length (and not empty)
+  public static boolean isSquare(int[][] a){
+    if (a.length == 0) return false;
+    for (int i=0; i<a.length; i++) if (a[i].length != a.length) return false;
+    return true;
+  }
+
+  //determinant of the square matrix a, mod m
+  public static int determinant(int[][] a, int m){
+    int n = a.length;
+    if (n == 1) return Math.floorMod(a[0][0], m);
+    if (n == 2) return det2(reduce(a, m), m);
+    if (n == 3) return det3(reduce(a, m), m);
+
+    /*Euclidean elimination: for each column, keep swapping the smallest
+    nonzero entry up to the pivot row and subtracting multiples of it from
+    the rows below (like GCD), until only the pivot is nonzero. Swaps flip
+    the sign; subtracting rows doesn't change the determinant*/
+    long[][] b = new long[n][n];
+    for (int i=0; i<n; i++)
+      for (int j=0; j<n; j++) b[i][j] = Math.floorMod(a[i][j], m);
+    long det = 1;
+    for (int col=0; col<n; col++){
+      while (true){
+        //row (at col or below) with the smallest nonzero entry in this column
+        int best = -1;
+        for (int r=col; r<n; r++)
+          if (b[r][col] != 0 && (best < 0 || b[r][col] < b[best][col])) best = r;
+        if (best < 0) return 0; //whole column is 0, so det = 0
+        if (best != col) {
+          long[] t = b[best]; b[best] = b[col]; b[col] = t;
+          det = m - det;
+        }
+        boolean done = true;
+        for (int r=col+1; r<n; r++){
+          if (b[r][col] == 0) continue;
+          long q = b[r][col] / b[col][col];
+          for (int j=col; j<n; j++) b[r][j] = Math.floorMod(b[r][j] - q*b[col][j], m);
+          if (b[r][col] != 0) done = false;
+        }
+        if (done) break;
+      }//end while
+      det = det * b[col][col] % m;
+    }//end for
+    return (int) (det % m);
+  }
+
+  //unrolled 2x2 determinant (entries already reduced)
+  private static int det2(int[][] a, int m){
+    return Math.floorMod((long) a[0][0]*a[1][1] - (long) a[0][1]*a[1][0], m);
+  }
+
+  //unrolled 3x3 determinant, expanding along the first row
+  private static int det3(int[][] a, int m){
+    long d = (long) a[0][0] * ((long) a[1][1]*a[2][2] - (long) a[1][2]*a[2][1])
+           - (long) a[0][1] * ((long) a[1][0]*a[2][2] - (long) a[1][2]*a[2][0])
+           + (long) a[0][2] * ((long) a[1][0]*a[2][1] - (long) a[1][1]*a[2][0]);
+    return Math.floorMod(d, m);
+  }
+
+  /*adjugate of a mod m: the transpose of the matrix of cofactors, so that
+  a*adj(a) = det(a)*I. Exists even when a has no inverse*/
+  public static int[][] adjugate(int[][] a, int m){
+    int n = a.length;
+    int[][] b = reduce(a, m);
+    if (n == 1) return new int[][] {{1 % m}};
+    if (n == 2) return new int[][] {
+      {b[1][1], (m - b[0][1]) % m},
+      {(m - b[1][0]) % m, b[0][0]}};
+    if (n == 3) {
+      int[][] adj = new int[3][3];
+      for (int i=0; i<3; i++){
+        for (int j=0; j<3; j++){
+          //cofactor (j, i), the rows and columns wrap around so the sign
+          //works itself out
+          int r1 = (j+1) % 3, r2 = (j+2) % 3, c1 = (i+1) % 3, c2 = (i+2) % 3;
+          adj[i][j] = Math.floorMod(
+            (long) b[r1][c1]*b[r2][c2] - (long) b[r1][c2]*b[r2][c1], m);
+        }
+      }
+      return adj;
+    }
+
+    //bigger matrices: every cofactor is the determinant of a minor
+    int[][] adj = new int[n][n], minor = new int[n-1][n-1];
+    for (int i=0; i<n; i++){
+      for (int j=0; j<n; j++){
+        for (int r=0, mr=0; r<n; r++){
+          if (r == i) continue;
+          for (int c=0, mc=0; c<n; c++){
+            if (c == j) continue;
+            minor[mr][mc] = b[r][c];
+            mc++;
+          }
+          mr++;
+        }
+        int cof = determinant(minor, m);
+        if ((i + j) % 2 == 1) cof = (m - cof) % m;
+        adj[j][i] = cof; //transposed
+      }
+    }
+    return adj;
+  }
+
+  //true if a has an inverse mod m, ie GCD(det(a), m)=1
+  public static boolean isInvertible(int[][] a, int m){
+    return isSquare(a) && Functions.GCD(determinant(a, m), m) == 1;
+  }
+
+  /*inverse of a mod m, ie the matrix b with ab = ba = I (mod m), which is
+  inv(det)*adj(a). Returns null (with a warning) if there is none*/
+  public static int[][] inverse(int[][] a, int m){
+    if (!isSquare(a)) {
+      System.out.println("Warning: only square matrices have inverses.");
+      return null;
+    }
+    int detInv = InverseTable.inverse(determinant(a, m), m);
+    if (detInv == 0 && m != 1) {
+      System.out.println("Warning: the determinant has no inverse mod " + m +
+        ", so the matrix has no inverse.");
+      return null;
+    }
+    int[][] adj = adjugate(a, m);
+    for (int i=0; i<adj.length; i++)
+      for (int j=0; j<adj.length; j++)
+        adj[i][j] = (int) ((long) adj[i][j] * detInv % m);
+    return adj;
+  }
+
+  //product ab mod m (a is r x k, b is k x c)
+  public static int[][] multiply(int[][] a, int[][] b, int m){
+    int rows = a.length, k = b.length, cols = b[0].length;
+    int[][] res = new int[rows][cols];
+    for (int i=0; i<rows; i++){
+      for (int j=0; j<cols; j++){
+        long sum = 0;
+        for (int t=0; t<k; t++) sum = sum + (long) a[i][t] * b[t][j];
+        res[i][j] = Math.floorMod(sum, m);
+      }
+    }
+    return res;
+  }
+
+  //product av mod m for a vector v
+  public static int[] multiply(int[][] a, int[] v, int m){
+    int[] res = new int[a.length];
+    mulAdd(a, new int[a.length], v, 0, res, 0, m);
+    return res;
+  }
+
+  /*the Hill Cipher block step: c = a*p + k (mod m), where p is the n entries
+  of p starting at pOff and the result goes into c starting at cOff. a, k and
+  p must already be reduced mod m. No allocation, so it can be called once
+  per block. 2x2 and 3x3 are unrolled*/
+  public static void mulAdd(int[][] a, int[] k, int[] p, int pOff, int[] c,
+    int cOff, int m){
+    switch (a.length){
+      case 2: {
+        long p0 = p[pOff], p1 = p[pOff+1];
+        int[] a0 = a[0], a1 = a[1];
+        c[cOff]   = (int) ((a0[0]*p0 + a0[1]*p1 + k[0]) % m);
+        c[cOff+1] = (int) ((a1[0]*p0 + a1[1]*p1 + k[1]) % m);
+        return;
+      }
+      case 3: {
+        long p0 = p[pOff], p1 = p[pOff+1], p2 = p[pOff+2];
+        int[] a0 = a[0], a1 = a[1], a2 = a[2];
+        c[cOff]   = (int) ((a0[0]*p0 + a0[1]*p1 + a0[2]*p2 + k[0]) % m);
+        c[cOff+1] = (int) ((a1[0]*p0 + a1[1]*p1 + a1[2]*p2 + k[1]) % m);
+        c[cOff+2] = (int) ((a2[0]*p0 + a2[1]*p1 + a2[2]*p2 + k[2]) % m);
+        return;
+      }
+      default: {
+        int n = a.length;
+        for (int i=0; i<n; i++){
+          long sum = k[i];
+          for (int j=0; j<n; j++) sum = sum + (long) a[i][j] * p[pOff+j];
+          c[cOff+i] = (int) (sum % m);
+        }
+      }
+    }//end switch
+  }
+
+  /*batch version of mulAdd for a whole message at once: p is an n x cols
+  matrix stored column major, ie column j (one block) is p[pOff + j*n ...],
+  and every column gets c_j = a*p_j + k (mod m), written to c the same way.
+  Columns are done a tile at a time; each tile of p is small enough to stay
+  in cache while every row of a goes over it*/
+  public static void mulAddColumns(int[][] a, int[] k, int[] p, int pOff,
+    int[] c, int cOff, int cols, int m){
+    int n = a.length;
+    if (n == 2) {mulAddColumns2(a, k, p, pOff, c, cOff, cols, m); return;}
+    if (n == 3) {mulAddColumns3(a, k, p, pOff, c, cOff, cols, m); return;}
+
+    int tile = Math.max(1, TILE_INTS / n);
+    for (int j0=0; j0<cols; j0=j0+tile){
+      int j1 = Math.min(cols, j0+tile);
+      for (int i=0; i<n; i++){
+        int[] row = a[i];
+        long ki = k[i];
+        for (int j=j0; j<j1; j++){
+          int base = pOff + j*n;
+          long sum = ki;
+          for (int t=0; t<n; t++) sum = sum + (long) row[t] * p[base+t];
+          c[cOff + j*n + i] = (int) (sum % m);
+        }
+      }
+    }//end for tiles
+  }
+
+  //ints of p per tile in mulAddColumns (16KB, fits in any L1 cache)
+  private static final int TILE_INTS = 4096;
+
+  //2x2 mulAddColumns: a 2 x cols matrix is one pass, with a and k in locals
+  private static void mulAddColumns2(int[][] a, int[] k, int[] p, int pOff,
+    int[] c, int cOff, int cols, int m){
+    long a00 = a[0][0], a01 = a[0][1], a10 = a[1][0], a11 = a[1][1],
+      k0 = k[0], k1 = k[1];
+    int end = pOff + 2*cols;
+    for (int i=pOff, o=cOff; i<end; i=i+2, o=o+2){
+      long p0 = p[i], p1 = p[i+1];
+      c[o]   = (int) ((a00*p0 + a01*p1 + k0) % m);
+      c[o+1] = (int) ((a10*p0 + a11*p1 + k1) % m);
+    }
+  }
+
+  //3x3 mulAddColumns
+  private static void mulAddColumns3(int[][] a, int[] k, int[] p, int pOff,
+    int[] c, int cOff, int cols, int m){
+    long a00 = a[0][0], a01 = a[0][1], a02 = a[0][2],
+      a10 = a[1][0], a11 = a[1][1], a12 = a[1][2],
+      a20 = a[2][0], a21 = a[2][1], a22 = a[2][2],
+      k0 = k[0], k1 = k[1], k2 = k[2];
+    int end = pOff + 3*cols;
+    for (int i=pOff, o=cOff; i<end; i=i+3, o=o+3){
+      long p0 = p[i], p1 = p[i+1], p2 = p[i+2];
+      c[o]   = (int) ((a00*p0 + a01*p1 + a02*p2 + k0) % m);
+      c[o+1] = (int) ((a10*p0 + a11*p1 + a12*p2 + k1) % m);
+      c[o+2] = (int) ((a20*p0 + a21*p1 + a22*p2 + k2) % m);
+    }
+  }
+
+  //the matrix as rows of numbers, one row per line
+  public static String toString(int[][] a){
+    StringBuilder sb = new StringBuilder();
+    for (int i=0; i<a.length; i++){
+      for (int j=0; j<a[i].length; j++){
+        if (j > 0) sb.append(' ');
+        sb.append(a[i][j]);
+      }
+      if (i < a.length-1) sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args){
+    int[][] a = {{1, 2, 3}, {0, 1, 4}, {5, 6, 0}};
+    int[][] inv = inverse(a, 26);
+    System.out.println("det = " + determinant(a, 26) + "\ninverse mod 26:\n" +
+      toString(inv) + "\nproduct:\n" + toString(multiply(a, inv, 26)));
+  }
+
+}//end class
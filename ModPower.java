@@ -0,0 +1,62 @@
+/*Overflow free modular exponentiation, n^power (mod p), for int, long and
+BigInteger moduli. Functions.modPower is built on the int version, and the
+long version is what lets ExpCipher/RSACipher style math work with moduli
+far past the old ~46341 limit, where (result*n) used to overflow an int.
+
+  int:        products of two ints always fit in a long, so just use longs
+  long:       small moduli still use plain longs; odd moduli use Montgomery
+              (sliding window, Math.multiplyHigh); even moduli fall back to
+              Primality.mulMod, which never overflows
+  BigInteger: BigInteger.modPow, which already uses sliding windows and
+              Montgomery multiplication inside
+
+Every version returns the least POSITIVE residue, like modPower always did.*/
+
+import java.math.BigInteger;
+
+public class ModPower{
+
+  //largest modulus whose products still fit in a long (floor(sqrt(2^63)))
+  private static final long SQRT_LONG_MAX = 3037000499L;
+
+  //n^power (mod p) for ints; power must be >= 0 and p >= 1
+  public static int pow(int n, int power, int p){
+    long result = 1, base = Math.floorMod(n, p);
+    while (power > 0){
+      if ((power & 1) == 1) result = result*base % p;
+      base = base*base % p; //successive squaring
+      power = power >> 1;
+    }
+    return (int) (result % p);
+  }
+
+  //n^power (mod p) for longs; power must be >= 0 and p >= 1
+  public static long pow(long n, long power, long p){
+    if (p == 1) return 0;
+    if (p <= SQRT_LONG_MAX) {
+      long result = 1, base = Math.floorMod(n, p);
+      while (power > 0){
+        if ((power & 1) == 1) result = result*base % p;
+        base = base*base % p;
+        power = power >> 1;
+      }
+      return result;
+    }
+    if ((p & 1) == 1) return new Montgomery(p).pow(n, power);
+    return Primality.powMod(Math.floorMod(n, p), power, p);
+  }
+
+  //n^power (mod p) for BigIntegers; power must be >= 0 and p >= 1
+  public static BigInteger pow(BigInteger n, BigInteger power, BigInteger p){
+    return n.modPow(power, p);
+  }
+
+  public static void main(String[] args){
+    //these used to overflow with int math
+    System.out.println("3^65536 mod 2147483647 = " + pow(3, 65536, 2147483647));
+    long p = 4611686018427387847L;
+    System.out.println("2^(p-1) mod p = " + pow(2L, p-1, p) + " (p prime)");
+    System.out.println("7^(2^62) mod 2^62 = " + pow(7L, 1L << 62, 1L << 62));
+  }
+
+}//end class
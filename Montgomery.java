@@ -0,0 +1,142 @@
+/*Montgomery multiplication mod an odd long modulus m (m < 2^63).
+Instead of dividing by m after every multiply, numbers are kept in
+"Montgomery form" aR (mod m) with R = 2^64, and the reduction only needs
+multiplies, shifts by 64 (free, just take the high word) and one
+subtraction. Math.multiplyHigh gives the high 64 bits of each product, so
+nothing ever overflows, even for moduli near 2^63.
+
+One Montgomery object is made per modulus and can then be reused for as many
+multiplies/powers as needed (ex. every witness in a Miller-Rabin test, or
+every residue of an RSA message). Objects are immutable, so threads can share
+them.*/
+
+public class Montgomery{
+
+  private final long m, mInv, r1, r2; //m, -inv(m) mod 2^64, R mod m, R^2 mod m
+
+  //constructor; m must be odd and > 1
+  public Montgomery(long myM){
+    if (myM < 3 || (myM & 1) == 0) {
+      throw new IllegalArgumentException("Montgomery needs an odd modulus > 1: "
+        + myM);
+    }
+    m = myM;
+    //Newton's method for inv(m) mod 2^64; each step doubles the correct bits
+    //and m itself is already correct to 3 bits (m*m=1 mod 8 for odd m)
+    long inv = m;
+    for (int i=0; i<5; i++) inv = inv * (2 - m*inv);
+    mInv = -inv;
+    //R mod m = (2^64 - m) mod m, R^2 mod m by doubling R mod m 64 times
+    r1 = Long.remainderUnsigned(-m, m);
+    long r = r1;
+    for (int i=0; i<64; i++) r = addMod(r, r);
+    r2 = r;
+  }
+
+  public long getModulus(){return m;}
+
+  //Montgomery arithmetic-------------------------------------------------------
+
+  //converts 0 <= a < m into Montgomery form aR (mod m)
+  public long toMont(long a){return multiply(a, r2);}
+
+  //converts aR (mod m) back to a
+  public long fromMont(long a){return reduce(0, a);}
+
+  //Montgomery form of 1
+  public long one(){return r1;}
+
+  /*multiplies two numbers in Montgomery form: (aR)(bR)/R = abR (mod m)
+  a and b must be in [0, m)*/
+  public long multiply(long a, long b){
+    return reduce(Math.multiplyHigh(a, b), a*b);
+  }
+
+  /*REDC: given T = hi*2^64 + lo < m*2^64, returns T/R (mod m) in [0, m)
+  u is picked so that T + u*m is divisible by 2^64*/
+  private long reduce(long hi, long lo){
+    long u = lo * mInv;
+    //lo + low(u*m) is 0 mod 2^64, so it carries exactly when lo != 0
+    long t = hi + unsignedMultiplyHigh(u, m) + (lo != 0 ? 1 : 0);
+    //t < 2m, so at most one subtraction (compared unsigned, t can pass 2^63)
+    if (Long.compareUnsigned(t, m) >= 0) t = t - m;
+    return t;
+  }
+
+  //high 64 bits of the UNSIGNED 128-bit product a*b
+  private static long unsignedMultiplyHigh(long a, long b){
+    return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+  }
+
+  //a+b (mod m) for 0 <= a, b < m, careful that a+b might not fit in a long
+  //(works the same in or out of Montgomery form)
+  public long addMod(long a, long b){
+    return (a >= m-b) ? a - (m-b) : a + b;
+  }
+  //end Montgomery arithmetic---------------------------------------------------
+
+  //regular (non-Montgomery form) operations------------------------------------
+
+  //a*b (mod m) for any longs a, b
+  public long mulMod(long a, long b){
+    return fromMont(multiply(toMont(Math.floorMod(a, m)), toMont(Math.floorMod(b, m))));
+  }
+
+  /*a^e (mod m) with sliding window exponentiation: the exponent is read from
+  the top bit down in windows of up to w bits that start and end with a 1, so
+  only the odd powers a, a^3, ... a^(2^w - 1) are needed, and each window
+  costs one multiply instead of one per set bit*/
+  public long pow(long a, long e){
+    if (e < 0) throw new IllegalArgumentException("negative exponent: " + e);
+    if (e == 0) return 1;
+    long base = toMont(Math.floorMod(a, m));
+    int bits = 64 - Long.numberOfLeadingZeros(e);
+    int w = windowSize(bits);
+
+    //odd powers of base: odd[i] = base^(2i+1)
+    long[] odd = new long[1 << (w-1)];
+    odd[0] = base;
+    if (odd.length > 1) {
+      long sq = multiply(base, base);
+      for (int i=1; i<odd.length; i++) odd[i] = multiply(odd[i-1], sq);
+    }
+
+    long result = r1;
+    int i = bits-1;
+    while (i >= 0){
+      if (((e >>> i) & 1) == 0) {//zeros just square
+        result = multiply(result, result);
+        i--;
+        continue;
+      }
+      //longest window [j, i] of at most w bits that ends in a 1
+      int j = Math.max(i-w+1, 0);
+      while (((e >>> j) & 1) == 0) j++;
+      int value = (int) ((e >>> j) & ((1L << (i-j+1)) - 1));
+      for (int k=j; k<=i; k++) result = multiply(result, result);
+      result = multiply(result, odd[value >> 1]);
+      i = j-1;
+    }//end while
+    return fromMont(result);
+  }
+
+  //window size that minimizes multiplies for an exponent of the given length
+  static int windowSize(int bits){
+    if (bits <= 8) return 1;
+    if (bits <= 24) return 2;
+    if (bits <= 80) return 3;
+    if (bits <= 240) return 4;
+    if (bits <= 672) return 5;
+    return 6;
+  }
+  //end regular operations------------------------------------------------------
+
+  public static void main(String[] args){
+    long p = 9223372036854775783L; //largest prime below 2^63
+    Montgomery mont = new Montgomery(p);
+    System.out.println("2^(p-1) mod p = " + mont.pow(2, p-1));
+    System.out.println("3^12345 mod 1000003 = " +
+      new Montgomery(1000003).pow(3, 12345));
+  }
+
+}//end class
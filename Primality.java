@@ -0,0 +1,233 @@
+/*Primality tests that are fast enough for real sized primes, using the
+Miller-Rabin test. Write n-1 = 2^s * t with t odd; for a "witness" a, a prime
+n always has a^t = 1 or a^(t*2^r) = -1 (mod n) for some r < s. A composite
+fails that for most a.
+For int and long there are known small sets of witnesses that catch EVERY
+composite in range, so those tests are deterministic (no randomness, no
+chance of error). For BigInteger the witnesses are random, so the chance of
+a wrong "prime" is at most 4^-rounds.
+
+Also makes random primes. For BigIntegers the candidates are tested in
+parallel across cores, since each test is independent.*/
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+public class Primality{
+
+  //witnesses that are enough for every n < 2^32 and every n < 2^64
+  private static final long[] INT_WITNESSES = {2, 7, 61},
+    LONG_WITNESSES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+  //default number of random witnesses for BigIntegers, error <= 4^-40
+  public static final int DEFAULT_ROUNDS = 40;
+
+  //small primes for cheap trial division before Miller-Rabin
+  private static final int[] SMALL_PRIMES =
+    Sieve.shared().primesInRange(2, 1000);
+
+  //deterministic tests---------------------------------------------------------
+
+  //tests if an int is prime. Uses the shared Sieve table when it can
+  public static boolean isPrime(int n){
+    if (n < 2) return false;
+    Sieve table = Sieve.shared();
+    if (table.inRange(n)) return table.isPrime(n);
+    if (n%2==0) return false;
+    for (int i=0; i<INT_WITNESSES.length; i++){
+      if (!millerRabin(n, INT_WITNESSES[i])) return false;
+    }
+    return true;
+  }
+
+  //tests if a long is prime, deterministically for every long
+  public static boolean isPrime(long n){
+    if (n <= Integer.MAX_VALUE) return isPrime((int) Math.max(n, 0));
+    for (int i=0; i<SMALL_PRIMES.length; i++){
+      if (n % SMALL_PRIMES[i] == 0) return false;
+    }
+    //one Montgomery setup for n is shared by all seven witnesses
+    Montgomery mont = new Montgomery(n);
+    long t = n-1, one = mont.one(), minusOne = mont.toMont(n-1), x;
+    int s = Long.numberOfTrailingZeros(t);
+    t = t >> s;
+    //and so is the exponent t, so its steps are worked out once (ExponentPlan)
+    ExponentPlan plan = new ExponentPlan(t, n);
+
+    for (int i=0; i<LONG_WITNESSES.length; i++){
+      long a = LONG_WITNESSES[i] % n;
+      if (a == 0) continue;
+      //same steps as millerRabin below, but in Montgomery form
+      x = mont.toMont(plan.pow(a));
+      if (x == one || x == minusOne) continue;
+      boolean passed = false;
+      for (int r=1; r<s && !passed; r++){
+        x = mont.multiply(x, x);
+        if (x == minusOne) passed = true;
+        else if (x == one) return false;
+      }
+      if (!passed) return false;
+    }
+    return true;
+  }
+
+  /*one round of Miller-Rabin for odd n > 2 and witness a (0 < a < n)
+  returns false if a proves that n is composite. Only used for ints, where
+  a*b always fits in a long*/
+  private static boolean millerRabin(long n, long a){
+    long t = n-1;
+    int s = Long.numberOfTrailingZeros(t);
+    t = t >> s;
+
+    long x = powMod(a, t, n);
+    if (x == 1 || x == n-1) return true;
+    for (int r=1; r<s; r++){
+      x = mulMod(x, x, n);
+      if (x == n-1) return true;
+      if (x == 1) return false; //1 with no -1 before it, so n is composite
+    }
+    return false;
+  }
+
+  //a^b (mod m) for 0 <= a < m, using successive squaring like modPower
+  static long powMod(long a, long b, long m){
+    long result = 1;
+    while (b > 0){
+      if ((b & 1) == 1) result = mulMod(result, a, m);
+      a = mulMod(a, a, m);
+      b = b >> 1;
+    }
+    return result;
+  }
+
+  /*a*b (mod m) for 0 <= a, b < m without overflowing. When a*b fits in a
+  long this is just %; otherwise it adds and doubles like long multiplication
+  by hand, one bit of b at a time. Odd moduli should use Montgomery instead,
+  this is the fallback for even ones (see ModPower)*/
+  static long mulMod(long a, long b, long m){
+    if (m <= 3037000499L) return a*b % m; //sqrt(2^63), so a*b fits
+    long result = 0;
+    while (b > 0){
+      if ((b & 1) == 1) result = addMod(result, a, m);
+      a = addMod(a, a, m);
+      b = b >> 1;
+    }
+    return result;
+  }
+
+  //a+b (mod m) for 0 <= a, b < m, careful that a+b might not fit in a long
+  private static long addMod(long a, long b, long m){
+    return (a >= m-b) ? a - (m-b) : a + b;
+  }
+  //end deterministic tests-----------------------------------------------------
+
+  //probabilistic test----------------------------------------------------------
+
+  //tests if a BigInteger is (probably) prime with DEFAULT_ROUNDS witnesses
+  public static boolean isProbablePrime(BigInteger n){
+    return isProbablePrime(n, DEFAULT_ROUNDS);
+  }
+
+  /*tests if a BigInteger is (probably) prime with the given number of random
+  witnesses. Anything that fits in a long uses the deterministic test*/
+  public static boolean isProbablePrime(BigInteger n, int rounds){
+    if (n.signum() <= 0) return false;
+    if (n.bitLength() < 63) return isPrime(n.longValue());
+    if (!n.testBit(0)) return false;
+    for (int i=0; i<SMALL_PRIMES.length; i++){
+      if (n.mod(BigInteger.valueOf(SMALL_PRIMES[i])).signum() == 0)
+        return false;
+    }
+
+    BigInteger one = BigInteger.ONE, nMinus1 = n.subtract(one),
+      two = BigInteger.TWO;
+    int s = nMinus1.getLowestSetBit();
+    BigInteger t = nMinus1.shiftRight(s), a, x;
+    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+    for (int i=0; i<rounds; i++){
+      //random witness in [2, n-2]
+      do {a = new BigInteger(n.bitLength(), rnd);}
+      while (a.compareTo(two) < 0 || a.compareTo(nMinus1) >= 0);
+
+      x = a.modPow(t, n);
+      if (x.equals(one) || x.equals(nMinus1)) continue;
+      boolean passed = false;
+      for (int r=1; r<s && !passed; r++){
+        x = x.multiply(x).mod(n);
+        if (x.equals(nMinus1)) passed = true;
+        else if (x.equals(one)) return false;
+      }
+      if (!passed) return false;
+    }
+    return true;
+  }
+  //end probabilistic test------------------------------------------------------
+
+  //random primes---------------------------------------------------------------
+
+  /*returns a random prime in [lo, hi], or 0 if there isn't one (after printing
+  a warning). Deterministic test, so the result is always prime*/
+  public static long randomPrime(long lo, long hi, Random rnd){
+    lo = Math.max(lo, 2);
+    if (hi < lo) {
+      System.out.println("Warning: there are no primes in [" + lo + ", " +
+        hi + "]");
+      return 0;
+    }
+    //about 1 in 44 numbers near 2^63 is prime, so missing 64000 random tries
+    //means the range (almost certainly) is tiny; then just scan it
+    long span = hi - lo + 1; //can overflow for huge ranges, see below
+    for (int tries=0; tries<64000; tries++){
+      long c = (span > 0) ? lo + Math.floorMod(rnd.nextLong(), span)
+        : Math.max(lo, rnd.nextLong() & Long.MAX_VALUE);
+      if (isPrime(c)) return c;
+    }
+    for (long c=lo; c<=hi && c>0; c++) if (isPrime(c)) return c;
+    System.out.println("Warning: there are no primes in [" + lo + ", " +
+      hi + "]");
+    return 0;
+  }
+
+  /*returns a random (probable) prime with exactly the given number of bits.
+  Candidates are made in batches from rnd (so the same seed gives the same
+  prime) and every batch is tested in parallel on all cores*/
+  public static BigInteger randomPrime(int bits, Random rnd){
+    if (bits < 2) {
+      System.out.println("Warning: a prime needs at least 2 bits. 2 is used.");
+      return BigInteger.TWO;
+    }
+    if (bits < 63) {
+      long lo = 1L << (bits-1), hi = (1L << bits) - 1;
+      return BigInteger.valueOf(randomPrime(lo, hi, rnd));
+    }
+
+    int batch = 4 * Runtime.getRuntime().availableProcessors();
+    BigInteger[] candidates = new BigInteger[batch];
+    while (true){
+      for (int i=0; i<batch; i++){
+        //top bit set (exact size) and bottom bit set (odd)
+        candidates[i] = new BigInteger(bits, rnd).setBit(bits-1).setBit(0);
+      }
+      int found = IntStream.range(0, batch).parallel()
+        .filter(i -> isProbablePrime(candidates[i]))
+        .findFirst().orElse(-1);
+      if (found >= 0) return candidates[found];
+    }
+  }
+  //end random primes-----------------------------------------------------------
+
+  public static void main(String[] args){
+    System.out.println("2147483647: " + isPrime(2147483647));
+    System.out.println("9223372036854775783: " + isPrime(9223372036854775783L));
+    System.out.println("3215031751 (strong pseudoprime to 2,3,5,7): " +
+      isPrime(3215031751L));
+    long start = System.nanoTime();
+    BigInteger p = randomPrime(1024, new Random());
+    System.out.println("1024 bit prime in " +
+      (System.nanoTime()-start)/1000000 + "ms:\n" + p);
+  }
+
+}//end class
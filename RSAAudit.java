@@ -0,0 +1,156 @@
+/*A weak key checker for RSA public keys (n, e) that fit in a long.
+It factors n with Factorization (so any key this small is really broken
+already, the audit shows how fast) and then checks for the classic mistakes
+that make bigger keys breakable too:
+
+  - n isn't the product of two different primes
+  - p and q are too close together (Fermat's method finds them right away)
+  - p-1 or q-1 only has small prime factors (Pollard's p-1 method)
+  - e is invalid ((e, phi(n)) != 1) or trivial (e = 1)
+  - d is tiny, d < n^(1/4)/3 (Wiener's continued fraction attack)
+
+The audit returns a report String instead of printing, like toString.
+
+Real size RSAKeys can't be factored, but a key already knows its p and q,
+so audit(RSAKey) does the same checks with them instead.*/
+
+import java.math.BigInteger;
+
+public class RSAAudit{
+
+  //p-1 whose prime factors are all below this is "smooth" (Pollard p-1)
+  public static final long SMOOTH_BOUND = 1L << 20;
+
+  //audits the public key of an RSACipher object (its RSAKey, if it has one)
+  public static String audit(RSACipher r){
+    if (r.getKey() != null) return audit(r.getKey());
+    return audit(r.getN(), r.getE());
+  }
+
+  /*audits an RSAKey. Keys that fit in a long get the full audit below; for
+  bigger ones the key's own p and q are used (there's no factoring to time),
+  and Pollard p-1 only looks for prime factors below SMOOTH_BOUND*/
+  public static String audit(RSAKey key){
+    if (key.getBits() < 63 && key.getE().bitLength() < 63)
+      return audit(key.getN().longValue(), key.getE().longValue());
+
+    BigInteger n = key.getN(), e = key.getE(), d = key.getD(),
+      p = key.getP().min(key.getQ()), q = key.getP().max(key.getQ());
+    String report = "RSA audit of a " + key.getBits() + " bit key, e=" + e + "\n";
+    int warnings = 0;
+
+    //Fermat: starting at sqrt(n), it takes (p+q)/2 - sqrt(n) steps
+    BigInteger root = n.sqrt();
+    if (root.multiply(root).compareTo(n) < 0) root = root.add(BigInteger.ONE);
+    BigInteger fermatSteps = p.add(q).shiftRight(1).subtract(root);
+    if (fermatSteps.compareTo(BigInteger.valueOf(1000)) <= 0) {
+      report = report + "WEAK: p and q are close together, Fermat's method "
+        + "finds them in about " + fermatSteps.max(BigInteger.ONE) + " step(s).\n";
+      warnings++;
+    }
+
+    //Pollard p-1: is p-1 or q-1 made of only primes below SMOOTH_BOUND?
+    if (isSmooth(p.subtract(BigInteger.ONE)) || isSmooth(q.subtract(BigInteger.ONE))) {
+      report = report + "WEAK: p-1 or q-1 has no prime factor above " +
+        SMOOTH_BOUND + ", Pollard's p-1 method finds it.\n";
+      warnings++;
+    }
+
+    //Wiener: d < n^(1/4)/3, ie 81d^4 < n
+    if (d.pow(4).multiply(BigInteger.valueOf(81)).compareTo(n) < 0) {
+      report = report + "WEAK: d is small enough for Wiener's attack.\n";
+      warnings++;
+    }
+
+    if (warnings == 0) report = report + "No structural weaknesses found.\n";
+    return report;
+  }
+
+  //helper: true if every prime factor of m is below SMOOTH_BOUND
+  private static boolean isSmooth(BigInteger m){
+    Sieve table = Sieve.shared(); //primes up to 2^20 = SMOOTH_BOUND
+    for (int i=0; i<table.numPrimes() && table.prime(i) < SMOOTH_BOUND; i++){
+      BigInteger pr = BigInteger.valueOf(table.prime(i));
+      while (m.mod(pr).signum() == 0) m = m.divide(pr);
+      if (m.equals(BigInteger.ONE)) return true;
+    }
+    return m.equals(BigInteger.ONE);
+  }
+
+  //audits the public key (n, e); returns a report of everything found
+  public static String audit(long n, long e){
+    String report = "RSA audit of n=" + n + ", e=" + e + "\n";
+    if (n < 6) return report + "n is too small to be an RSA modulus.\n";
+
+    long start = System.nanoTime();
+    long[] f = Factorization.factor(n);
+    long micros = (System.nanoTime()-start)/1000;
+    report = report + "Factored n in " + micros + " us: ";
+    for (int i=0; i<f.length; i++) report = report + (i>0 ? " * " : "") + f[i];
+    report = report + "\n";
+
+    if (f.length != 2 || f[0] == f[1]) {
+      return report + "WEAK: n is not the product of two different primes, so"
+        + " RSA decipher does not work as expected.\n";
+    }
+
+    long p = f[0], q = f[1], phiN = (p-1)*(q-1);
+    int warnings = 0;
+
+    //e checks
+    if (e <= 1) {
+      report = report + "WEAK: e=" + e + " does not encipher anything.\n";
+      warnings++;
+    }
+    else if (Functions.GCD(e, phiN) != 1) {
+      report = report + "WEAK: (e, phi(n)) != 1, so there is no d.\n";
+      return report;
+    }
+    long d = Functions.getInverseMod(e, phiN);
+    report = report + "Recovered phi(n)=" + phiN + " and d=" + d + "\n";
+
+    //Fermat: starting at sqrt(n), it takes (p+q)/2 - sqrt(n) steps
+    long fermatSteps = (p + (q-p)/2) - (long) Math.ceil(Math.sqrt((double) n));
+    if (fermatSteps <= 1000) {
+      report = report + "WEAK: p and q are close together, Fermat's method "
+        + "finds them in about " + Math.max(fermatSteps, 1) + " step(s).\n";
+      warnings++;
+    }
+
+    //Pollard p-1: largest prime factor of p-1 and q-1
+    long[] pm1 = Factorization.factor(p-1), qm1 = Factorization.factor(q-1);
+    long largest = Math.max(pm1[pm1.length-1], qm1[qm1.length-1]);
+    long smallest = Math.min(pm1[pm1.length-1], qm1[qm1.length-1]);
+    if (smallest < SMOOTH_BOUND) {
+      report = report + "WEAK: p-1 or q-1 has no prime factor above " +
+        smallest + ", Pollard's p-1 method finds it.\n";
+      warnings++;
+    }
+    else report = report + "Largest prime factor of p-1, q-1: " + largest + "\n";
+
+    //Wiener: d < n^(1/4)/3
+    if (d < Math.pow((double) n, 0.25) / 3) {
+      report = report + "WEAK: d=" + d + " is small enough for Wiener's "
+        + "attack.\n";
+      warnings++;
+    }
+
+    if (warnings == 0)
+      report = report + "No structural weaknesses found (but n is still far "
+        + "too small: it was just factored).\n";
+    return report;
+  }
+
+  public static void main(String[] args){
+    System.out.println(audit(new RSACipher("hello", 7, 11, 17)));
+    System.out.println(audit(999999866000004473L, 65537));
+    System.out.println(audit(4611686014132420609L, 65537));
+    //two 31 bit "safe-ish" primes that are far apart
+    System.out.println(audit(1000000007L * 2147483629L, 65537));
+    //real size keys: a random one, and one with p and q right next to each other
+    System.out.println(audit(new RSACipher("hello", RSAKey.generate(1024))));
+    BigInteger p = BigInteger.ONE.shiftLeft(511).nextProbablePrime();
+    System.out.println(audit(RSAKey.of(p, p.nextProbablePrime(), RSAKey.DEFAULT_E)));
+  }
+
+}//end class
@@ -2,7 +2,13 @@
 since p & q should be primes at least one hundred digits long. I'm not
 interested in extending this to BigInt, so I'll leave that as an exercise for
  the user. Additionally, some of the math methods are not the most efficient,
- so their runtimes might be rather frightening with such large primes...*/
+ so their runtimes might be rather frightening with such large primes...
+
+ (The exercise is done: an RSACipher made with an RSAKey uses BigIntegers, so
+ real size keys work, and deciphers with the Chinese Remainder Theorem. The
+ int p, q, e version below is still there for small examples.)*/
+
+import java.math.BigInteger;
 
 public class RSACipher{
 
@@ -11,11 +17,18 @@ public class RSACipher{
   //in RSA, the "locking key" n and e are public, but p and q are secret
   private int p=1, q=1, e=1, n, phiN, d=1; //p, q are prime, n=pq, (e,phi(n))=1, d=inv(e) mod(phi(n))
   private boolean enciphered = false;
+  //BigInteger key; when it isn't null it is used instead of the ints above
+  private RSAKey key = null;
+  //every letter's number for the current key, made the first time it is
+  //needed and kept for every message after that (see ResidueTable.java)
+  private ResidueTable table = null;
 
   private final String decipherFailed =
     "Decipher failed! Your message is not enciphered!",
     encipherFailed = "Encipher failed! Your message is already enciphered!",
-    letters = Functions.getLetters();
+    noModulus = "Failed! p and q have not been set, so there is no n to use.";
+  //table lookups instead of scanning a String for every letter (ignores case)
+  private final Alphabet letters = Alphabet.ENGLISH;
 
   //constructors--------------------------------------------------------------
 
@@ -23,10 +36,18 @@ public class RSACipher{
   //and returns an RSA cipher object
   public RSACipher(String myMessage, int P, int Q, int E){
     message = myMessage;
-    if (Functions.isPrime(P)) p=P; else System.out.println("Not a prime: "+P);
-    if (Functions.isPrime(Q)) q=Q; else System.out.println("Not a prime: "+Q);
-    //don't do unnecessary calc if p, q is invalid. This is why e defaults to 1 :)
-    if (p!=1 && q!=1) this.setValues(E);
+    int newP = 1, newQ = 1;
+    if (Primality.isPrime(P)) newP=P; else System.out.println("Not a prime: "+P);
+    if (Primality.isPrime(Q)) newQ=Q; else System.out.println("Not a prime: "+Q);
+    //setValues doesn't do unnecessary calc if p, q is invalid. This is why e
+    //defaults to 1 :)
+    this.setValues(newP, newQ, E);
+  }
+
+  //accepts a message and an RSAKey (see RSAKey.generate for real size keys)
+  public RSACipher(String myMessage, RSAKey myKey){
+    message = myMessage;
+    key = myKey;
   }
 
   //accepts fileName containing a message to encipher, and the values for p, q, and e
@@ -37,11 +58,22 @@ public class RSACipher{
   }
   //end constructors----------------------------------------------------------
 
-  //helper: makes sure that the given value of e is valid (in correct range),
-  //and relatively prime to phi(n)
-  private void setValues(int E){
-    //called if p or q have been set, so we need to recalculate n and phi(n)
+  /*helper: sets p and q (already checked to be prime, or 1 for not set),
+  recalculates n and phi(n), and makes sure that the given value of e is valid
+  (in correct range), and relatively prime to phi(n). p*q is checked before
+  anything is changed, so if it is too big the object is left as it was*/
+  private void setValues(int P, int Q, int E){
+    if ((long) P*Q > Integer.MAX_VALUE) {
+      System.out.println("Warning: n=p*q is too large for an int. Please use "
+        + "smaller primes.");
+      return;
+    }
+    p=P;
+    q=Q;
+    //no n until both p and q are set
+    if (p==1 || q==1) return;
     n=p*q;
+    table = null; //new key, so a new table
     //IMPORTANT: calculating phi(n) would be expensive, and is equivalent to
     //the much easier (p-1)*(q-1)
     phiN = (p-1)*(q-1);
@@ -50,10 +82,21 @@ public class RSACipher{
     else if (E>=phiN) System.out.println("Warning: e is too large");
     else if (Functions.GCD(E, phiN)!=1)
       System.out.println("Warning: (e, phi(n)) != 1");
-    else {
-      e=E;
-      d=Functions.getInverseMod(e, phiN);
+    else e=E;
+    //the old e might not work with a new phi(n) either; then back to e=1
+    if (e!=1 && (e>=phiN || Functions.GCD(e, phiN)!=1)) {
+      System.out.println("Warning: e=" + e + " does not work with the new p and q."
+        + " The default value of 1 will be used.");
+      e=1;
     }
+    d=Functions.getInverseMod(e, phiN); //one inverse, so no InverseTable
+  }
+
+  //helper: prints a warning and returns false if there's no n to use yet
+  private boolean hasModulus(){
+    if (key != null || n >= 2) return true;
+    System.out.println(noModulus);
+    return false;
   }
 
   //getters & setters----------------------------------------------------------
@@ -61,29 +104,27 @@ public class RSACipher{
   public void setMessage(String m){message = m;}
   public int getP(){return p;}
   public void setP(int P){
-    if (Functions.isPrime(P)) {
-      p = P;
-      this.setValues(e);
-    } else System.out.println("Not a prime: "+P);
+    if (Primality.isPrime(P)) this.setValues(P, q, e); else System.out.println("Not a prime: "+P);
   }
   public int getQ(){return q;}
   public void setQ(int Q){
-    if (Functions.isPrime(Q)) {
-      q = Q;
-      this.setValues(e);
-    } else System.out.println("Not a prime: "+q);
+    if (Primality.isPrime(Q)) this.setValues(p, Q, e); else System.out.println("Not a prime: "+q);
   }
   public int getE(){return e;}
-  public void setE(int e) {this.setValues(e);}
+  public void setE(int e) {this.setValues(p, q, e);}
   //no setters for n, phi(n), d b/c they depend on other values
   public int getN(){return n;}
   public int getPhiN(){return phiN;}
   public int getD(){return d;}
   public boolean getEnciphered(){return enciphered;}
   public void setEnciphered(boolean enc){enciphered = enc;}
+  //the BigInteger key, or null if this cipher uses the int p, q, e
+  public RSAKey getKey(){return key;}
   //end getters & setters------------------------------------------------------
 
   public String toString(){
+    if (key != null)
+      return "Message: "+message+"\n"+key+"\nEnciphered? "+enciphered;
     String s = "Message: "+message+"\np="+p+"\nq="+q+"\nn="+n+"\nphi(n)="+phiN+
       "\ne="+e+"\nEnciphered? "+enciphered;
     return s;
@@ -96,22 +137,12 @@ public class RSACipher{
   (which ExpCipher always does) would not only be expensive but pointless*/
   public String encipher(){
     if (enciphered) System.out.println(encipherFailed);
-    else{
-      message = message.toUpperCase();
-      String newMessage = "";
-      int len = message.length(), index;
-
+    else if (hasModulus()){
       //Note: Like Hill cipher, this NEEDS to restrict iteself to letters
       //(no punctuation)
-      for (int i=0; i<len; i++){
-        index = letters.indexOf(message.charAt(i));
-        if (index>-1)
-          //overflow fixed by modPower
-          newMessage = newMessage+Functions.modPower(index, e, n)+" ";
-      }//end for
-
-      //done w new Message
-      message = newMessage;
+      //P^e (mod n) for all 26 letters is already in the table, so this is
+      //just lookups (for an RSAKey too)
+      message = table().encipher(message, letters);
       enciphered = true;
     }//end else
     return message;
@@ -122,18 +153,16 @@ public class RSACipher{
   This method looks a lot like that from ExpCipher but the power calculation is
   very distinct.*/
   public String decipher(){
-    if (enciphered){
-      int C;
-      String newMessage="";
-      //enciphered message is numbers delimited by a space
-      String[] lets = message.split(" ");
-
-      for (int i=0; i<lets.length; i++)
-        newMessage = newMessage +
-          letters.charAt(Functions.modPower(Integer.parseInt(lets[i]), d, n));
-        //newMessage = newMessage+letters.charAt((int) Math.pow(Integer.parseInt(lets[i]),d)%q);
-
-      message = newMessage;
+    if (enciphered && !hasModulus()) return message;
+    int[] header = enciphered ? LetterBlocks.readHeader(message) : null;
+    if (header != null) {
+      message = decipherBlocks(header[0], header[1]);
+      enciphered = false;
+    }
+    else if (enciphered){
+      //the table has C^d for every C that a letter enciphers to, so the
+      //(very slow, for a real size key) power is only done for anything else
+      message = table().decipher(message, letters);
       enciphered = false;
     }
     else System.out.println(decipherFailed);
@@ -141,12 +170,181 @@ public class RSACipher{
     return message;
   }
 
+  /*block version of encipher: packs k letters into each number (see
+  LetterBlocks.java), with k as big as n allows (6 letters for an int n near
+  2^31, hundreds for a real size key), so there are k times fewer powers to
+  do and a much shorter ciphertext. The result starts with a "letters:k"
+  header, which is how decipher knows it is in blocks*/
+  public String encipherBlocks(){
+    if (enciphered) {
+      System.out.println(encipherFailed);
+      return message;
+    }
+    if (!hasModulus()) return message;
+    int[] lets = letters.indices(message);
+    int num = lets.length, k = (key != null) ? LetterBlocks.blockSize(key.getN())
+      : LetterBlocks.blockSize(n);
+    StringBuilder newMessage = new StringBuilder(LetterBlocks.header(num, k));
+    if (key != null) {
+      BigInteger[] numbers = encipherBigBlocks(lets, k);
+      for (int b=0; b<numbers.length; b++) newMessage.append(' ').append(numbers[b]);
+    }
+    else {
+      int[] numbers = encipherBlocks(lets, k);
+      for (int b=0; b<numbers.length; b++) newMessage.append(' ').append(numbers[b]);
+    }
+    message = newMessage.toString();
+    enciphered = true;
+    return message;
+  }
+
+  /*helpers: pack the letters in blocks of k and encipher every block at
+  once (every block is below n, so C=P^e (mod n) still works). The power is
+  the same for all of them, so BatchModPower works out its steps once*/
+  private int[] encipherBlocks(int[] lets, int k){
+    int num = lets.length;
+    int[] numbers = new int[LetterBlocks.numBlocks(num, k)];
+    for (int b=0; b<numbers.length; b++)
+      numbers[b] = (int) LetterBlocks.pack(lets, b*k, Math.min(k, num-b*k));
+    BatchModPower.pow(numbers, e, n, numbers);
+    return numbers;
+  }
+
+  private BigInteger[] encipherBigBlocks(int[] lets, int k){
+    int num = lets.length;
+    BigInteger[] numbers = new BigInteger[LetterBlocks.numBlocks(num, k)];
+    for (int b=0; b<numbers.length; b++)
+      numbers[b] = LetterBlocks.packBig(lets, b*k, Math.min(k, num-b*k));
+    BatchModPower.pow(numbers, key.getE(), key.getN(), numbers);
+    return numbers;
+  }
+
+  //helper: deciphers numLetters letters in blocks of k (after the header)
+  private String decipherBlocks(int numLetters, int k){
+    String[] blocks = message.trim().split(" +");
+    int count = Math.min(LetterBlocks.numBlocks(numLetters, k), blocks.length-1);
+    if (key != null) {
+      BigInteger[] numbers = new BigInteger[count];
+      for (int b=0; b<count; b++) numbers[b] = new BigInteger(blocks[b+1]);
+      return unpackBlocks(numLetters, k, numbers);
+    }
+    int[] numbers = new int[count];
+    for (int b=0; b<count; b++) numbers[b] = Integer.parseInt(blocks[b+1]);
+    return unpackBlocks(numLetters, k, numbers);
+  }
+
+  /*helpers: decipher every block number at once (in parallel for a long
+  message, see BatchModPower.java; real size keys are where this pays off)
+  and unpack them into numLetters letters in blocks of k*/
+  private String unpackBlocks(int numLetters, int k, int[] numbers){
+    if (numbers.length < LetterBlocks.numBlocks(numLetters, k))
+      System.out.println("Warning: the message is missing some blocks.");
+    BatchModPower.pow(numbers, d, n, numbers);
+    int len = Math.min(numLetters, numbers.length*k);
+    char[] newMessage = new char[len];
+    for (int b=0; b*k<len; b++)
+      LetterBlocks.unpack(numbers[b], Math.min(k, len-b*k), newMessage, b*k);
+    return new String(newMessage);
+  }
+
+  private String unpackBlocks(int numLetters, int k, BigInteger[] numbers){
+    if (numbers.length < LetterBlocks.numBlocks(numLetters, k))
+      System.out.println("Warning: the message is missing some blocks.");
+    BatchModPower.decipher(key, numbers, numbers);
+    int len = Math.min(numLetters, numbers.length*k);
+    char[] newMessage = new char[len];
+    for (int b=0; b*k<len; b++)
+      LetterBlocks.unpack(numbers[b], Math.min(k, len-b*k), newMessage, b*k);
+    return new String(newMessage);
+  }
+
+  /*enciphers the message to bytes (see ResidueCodec.java) instead of text,
+  one number per letter, or k letters per number if blocks is true (like
+  encipherBlocks). The message itself isn't changed; decipherBytes turns the
+  bytes back into text. Returns null if the message is already enciphered
+  (or there is no n yet)*/
+  public byte[] encipherBytes(boolean blocks){
+    if (enciphered) {
+      System.out.println(encipherFailed);
+      return null;
+    }
+    if (!hasModulus()) return null;
+    int[] lets = letters.indices(message);
+    int num = lets.length, k = !blocks ? 1 : (key != null) ?
+      LetterBlocks.blockSize(key.getN()) : LetterBlocks.blockSize(n);
+    int numBlocks = LetterBlocks.numBlocks(num, k);
+    if (key != null) {
+      BigInteger[] numbers = (k == 1) ? new BigInteger[numBlocks] :
+        encipherBigBlocks(lets, k);
+      if (k == 1) for (int b=0; b<numBlocks; b++) numbers[b] = table().bigNumber(lets[b]);
+      return ResidueCodec.encode(num, k, numbers, key.getN());
+    }
+    int[] blockNumbers = (k == 1) ? null : encipherBlocks(lets, k);
+    long[] numbers = new long[numBlocks];
+    for (int b=0; b<numBlocks; b++)
+      numbers[b] = (k == 1) ? table().number(lets[b]) : blockNumbers[b];
+    return ResidueCodec.encode(num, k, numbers, n);
+  }
+
+  //deciphers bytes from encipherBytes, sets the message to the result (not
+  //enciphered) and returns it
+  public String decipherBytes(byte[] data){
+    if (!hasModulus()) return message;
+    ResidueCodec in = ResidueCodec.reader(data);
+    if (in == null) return message;
+    int num = in.getNumLetters(), k = in.getBlockSize();
+    int max = Math.min(in.getNumBlocks(), data.length), count = 0;
+    if (k == 1) {//one letter per number: just table lookups
+      char[] newMessage = new char[max];
+      for (; count<max && in.hasNext(); count++){
+        newMessage[count] = letters.charAtMod((key != null) ?
+          table().letterOf(in.nextBig()) : table().letterOf(in.nextLong()));
+      }
+      if (count < num) System.out.println("Warning: the message is missing some blocks.");
+      message = new String(newMessage, 0, count);
+    }
+    //blocks: read all the numbers first, so the powers can be done all at once
+    else if (key != null) {
+      BigInteger[] numbers = new BigInteger[max];
+      while (count < max && in.hasNext()) numbers[count++] = in.nextBig();
+      message = unpackBlocks(num, k, java.util.Arrays.copyOf(numbers, count));
+    }
+    else {
+      int[] numbers = new int[max];
+      while (count < max && in.hasNext()) numbers[count++] = (int) (in.nextLong() % n);
+      message = unpackBlocks(num, k, java.util.Arrays.copyOf(numbers, count));
+    }
+    enciphered = false;
+    return message;
+  }
+
+  //helper: the table for the current key, made the first time it is needed
+  //(the public methods check hasModulus first)
+  private ResidueTable table(){
+    if (table == null) table = (key != null) ? new ResidueTable(key, letters.size())
+      : new ResidueTable(n, e, d, letters.size());
+    return table;
+  }
+
   public static void main(String[] args){
 
     RSACipher r = RSAFromText("frankenstein.txt", 7, 11, 17);
     System.out.println(r);
     System.out.println(r.encipher());
     System.out.println(r.decipher());
+
+    RSACipher big = new RSACipher("Real size keys work too", RSAKey.generate(2048));
+    System.out.println(big.getKey());
+    System.out.println(big.encipher().substring(0, 80) + "...");
+    System.out.println(big.decipher());
+    //same key in blocks: one number for every few hundred letters
+    big.setMessage(Functions.fileToString("frankensteinCh1.txt"));
+    System.out.println(big.encipherBlocks().substring(0, 80) + "...");
+    System.out.println(big.decipher().substring(0, 80) + "...");
+    //and as bytes: 256 bytes for every 435 letters
+    byte[] data = big.encipherBytes(true);
+    System.out.println(data.length + " bytes\n" +
+      big.decipherBytes(data).substring(0, 80) + "...");
   }
 
 }//end class
@@ -0,0 +1,139 @@
+/*A real-size RSA key with BigIntegers: n = pq, e, and d = inv(e) mod phi(n).
+Everything the private key needs is worked out once, when the key is made,
+including the Chinese Remainder Theorem (CRT) values
+  dp = d mod (p-1), dq = d mod (q-1), qInv = inv(q) mod p
+so deciphering C^d (mod n) can be done as two half size powers instead:
+  m1 = C^dp (mod p), m2 = C^dq (mod q), h = qInv(m1-m2) (mod p), P = m2 + hq
+Half the bits means about 1/8 the work per power, so two of them is about
+4 times faster than one full C^d (mod n).
+
+A key never changes after it is made, so it can be shared by any number of
+RSACipher objects (and threads). generate() makes a new key of any size.*/
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Random;
+
+public class RSAKey{
+
+  //the usual public exponent: prime, and only two 1 bits, so C=P^e is quick
+  public static final BigInteger DEFAULT_E = BigInteger.valueOf(65537);
+
+  private final BigInteger n, e, d, p, q, dp, dq, qInv;
+
+  //makes the key; p and q have to be distinct primes and (e, phi(n))=1 (see of())
+  private RSAKey(BigInteger myP, BigInteger myQ, BigInteger myE){
+    p = myP;
+    q = myQ;
+    e = myE;
+    n = p.multiply(q);
+    BigInteger pMinus1 = p.subtract(BigInteger.ONE),
+      qMinus1 = q.subtract(BigInteger.ONE);
+    //phi(n) = (p-1)(q-1), like RSACipher
+    d = e.modInverse(pMinus1.multiply(qMinus1));
+    dp = d.mod(pMinus1);
+    dq = d.mod(qMinus1);
+    qInv = q.modInverse(p);
+  }
+
+  /*returns the key for primes p, q and exponent e, or null (with a warning)
+  if p or q isn't prime, p=q, or e isn't valid (1 < e < phi(n), (e, phi(n))=1)*/
+  public static RSAKey of(BigInteger p, BigInteger q, BigInteger e){
+    if (!Primality.isProbablePrime(p) || !Primality.isProbablePrime(q)) {
+      System.out.println("Warning: p and q need to be prime.");
+      return null;
+    }
+    if (p.equals(q)) {
+      System.out.println("Warning: p and q need to be different primes.");
+      return null;
+    }
+    BigInteger phiN = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+    if (e.compareTo(BigInteger.ONE) <= 0 || e.compareTo(phiN) >= 0 ||
+      !e.gcd(phiN).equals(BigInteger.ONE)) {
+      System.out.println("Warning: e needs 1 < e < phi(n) and (e, phi(n)) = 1.");
+      return null;
+    }
+    //(p can be bigger or smaller than q; the CRT step works either way)
+    return new RSAKey(p, q, e);
+  }
+
+  //same as above for int values (ex. the small examples in RSACipher)
+  public static RSAKey of(int p, int q, int e){
+    return of(BigInteger.valueOf(p), BigInteger.valueOf(q), BigInteger.valueOf(e));
+  }
+
+  //a new random key whose n has the given number of bits (from a SecureRandom)
+  public static RSAKey generate(int bits){
+    return generate(bits, new SecureRandom());
+  }
+
+  /*a new random key with e = 65537 whose n has exactly the given number of
+  bits (at least 16). p and q are random primes of half the bits each (see
+  Primality.randomPrime), picked again until everything works out*/
+  public static RSAKey generate(int bits, Random rnd){
+    bits = Math.max(bits, 16);
+    int pBits = (bits + 1) / 2, qBits = bits - pBits;
+    while (true){
+      BigInteger p = Primality.randomPrime(pBits, rnd),
+        q = Primality.randomPrime(qBits, rnd);
+      if (p.equals(q) || p.multiply(q).bitLength() != bits) continue;
+      BigInteger phiN = p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE));
+      if (!DEFAULT_E.gcd(phiN).equals(BigInteger.ONE) || DEFAULT_E.compareTo(phiN) >= 0)
+        continue;
+      return new RSAKey(p, q, DEFAULT_E);
+    }
+  }
+
+  //getters---------------------------------------------------------------------
+  //the public key is (n, e); everything else is secret
+  public BigInteger getN(){return n;}
+  public BigInteger getE(){return e;}
+  public BigInteger getD(){return d;}
+  public BigInteger getP(){return p;}
+  public BigInteger getQ(){return q;}
+  public int getBits(){return n.bitLength();}
+  //end getters-----------------------------------------------------------------
+
+  //C = P^e (mod n), for 0 <= P < n
+  public BigInteger encipher(BigInteger plain){
+    return plain.modPow(e, n);
+  }
+
+  //P = C^d (mod n), using the CRT (see above)
+  public BigInteger decipher(BigInteger cipher){
+    BigInteger m1 = cipher.mod(p).modPow(dp, p),
+      m2 = cipher.mod(q).modPow(dq, q),
+      h = qInv.multiply(m1.subtract(m2)).mod(p);
+    return m2.add(h.multiply(q));
+  }
+
+  //P = C^d (mod n) the long way, with no CRT (for checking decipher)
+  public BigInteger decipherNoCRT(BigInteger cipher){
+    return cipher.modPow(d, n);
+  }
+
+  public String toString(){
+    return "RSA key (" + getBits() + " bits)\nn=" + n + "\ne=" + e;
+  }
+
+  public static void main(String[] args){
+    int bits = (args.length > 0) ? Integer.parseInt(args[0]) : 2048;
+    long start = System.nanoTime();
+    RSAKey key = generate(bits);
+    System.out.println("Made a " + key.getBits() + " bit key in " +
+      (System.nanoTime()-start)/1000000 + " ms");
+
+    BigInteger c = key.encipher(BigInteger.valueOf(123456789));
+    for (int i=0; i<20; i++) {key.decipher(c); key.decipherNoCRT(c);} //warm up
+    start = System.nanoTime();
+    for (int i=0; i<50; i++) key.decipherNoCRT(c);
+    long plain = System.nanoTime() - start;
+    start = System.nanoTime();
+    BigInteger m = null;
+    for (int i=0; i<50; i++) m = key.decipher(c);
+    long crt = System.nanoTime() - start;
+    System.out.println("deciphered " + m + "; CRT is " +
+      String.format("%.1f", (double) plain / crt) + "x faster than C^d mod n");
+  }
+
+}//end class
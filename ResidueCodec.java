@@ -0,0 +1,193 @@
+/*A binary format for ExpCipher and RSACipher ciphertext, instead of numbers
+written out in decimal with spaces in between (about 4 times the bytes, and
+deciphering has to find and parse every number). The layout is
+  format     1 byte: FIXED or VARINT
+  letters    varint: how many letters the message has
+  k          varint: letters per number (1, or the block size, see LetterBlocks)
+  width      varint: bytes per number (FIXED only)
+  numbers    one per block, all "width" bytes big endian (FIXED), or each
+             as a varint (VARINT)
+A varint (LEB128) is 7 bits per byte, low bits first, with the top bit set
+on every byte but the last, so small numbers take fewer bytes.
+
+Numbers below a big modulus are usually about as big as the modulus, so
+fixed width is usually smaller. But with a small e, P^e can be much smaller
+than the modulus, so encode() works out both sizes and uses the smaller one.
+
+A ResidueCodec object reads the format back: reader() reads the header, then
+nextLong()/nextBig() give the numbers in order.*/
+
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+public class ResidueCodec{
+
+  public static final byte FIXED = 0, VARINT = 1;
+
+  private final ByteBuffer buf;
+  private final byte format;
+  private final int numLetters, k, width;
+
+  //reader for data whose header has already been read
+  private ResidueCodec(ByteBuffer myBuf, byte myFormat, int myLetters, int myK,
+    int myWidth){
+    buf = myBuf;
+    format = myFormat;
+    numLetters = myLetters;
+    k = myK;
+    width = myWidth;
+  }
+
+  /*reads the header of data and returns a reader for its numbers, or null
+  (with a warning) if data isn't in this format*/
+  public static ResidueCodec reader(byte[] data){
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    try {
+      byte format = buf.get();
+      long letters = getVarint(buf), k = getVarint(buf),
+        width = (format == FIXED) ? getVarint(buf) : 0;
+      //counts with the top bit set come out negative, so both ends are checked
+      if ((format == FIXED || format == VARINT) &&
+        letters >= 0 && letters <= Integer.MAX_VALUE &&
+        k >= 1 && k <= Integer.MAX_VALUE &&
+        width >= 0 && width <= Integer.MAX_VALUE &&
+        (format == VARINT || width >= 1) &&
+        (letters + k - 1) / k <= Integer.MAX_VALUE) //numBlocks fits in an int
+        return new ResidueCodec(buf, format, (int) letters, (int) k, (int) width);
+    } catch (BufferUnderflowException e) {}
+    System.out.println("Warning: not enciphered bytes (bad header).");
+    return null;
+  }
+
+  //getters---------------------------------------------------------------------
+  public int getNumLetters(){return numLetters;}
+  public int getBlockSize(){return k;}
+  public int getNumBlocks(){return LetterBlocks.numBlocks(numLetters, k);}
+  //true if there is a whole number left to read (so cut off data just stops)
+  public boolean hasNext(){
+    if (format == FIXED) return buf.remaining() >= width;
+    for (int i=buf.position(); i<buf.limit(); i++)
+      if ((buf.get(i) & 0x80) == 0) return true; //the last byte of a varint
+    return false;
+  }
+  //end getters-----------------------------------------------------------------
+
+  //the next number (one that fits in a long)
+  public long nextLong(){
+    if (format == VARINT) return getVarint(buf);
+    long v = 0;
+    for (int i=0; i<width; i++) v = (v << 8) | (buf.get() & 0xFF);
+    return v;
+  }
+
+  //the next number, any size
+  public BigInteger nextBig(){
+    if (format == FIXED) {
+      byte[] b = new byte[width];
+      buf.get(b);
+      return new BigInteger(1, b);
+    }
+    BigInteger v = BigInteger.ZERO;
+    int b, shift = 0;
+    do {
+      b = buf.get();
+      v = v.or(BigInteger.valueOf(b & 0x7F).shiftLeft(shift));
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return v;
+  }
+
+  /*the bytes for numLetters letters in blocks of k, given the numbers for
+  each block (all 0 <= C < modulus)*/
+  public static byte[] encode(int numLetters, int k, long[] numbers, long modulus){
+    int width = Math.max(1, (64 - Long.numberOfLeadingZeros(modulus - 1) + 7) / 8);
+    long varBytes = 0;
+    for (long c : numbers) varBytes += varintLength(c);
+    boolean fixed = (long) width * numbers.length <= varBytes;
+    ByteBuffer buf = header(fixed, numLetters, k, width,
+      fixed ? (long) width * numbers.length : varBytes);
+    for (long c : numbers){
+      if (fixed) for (int i=width-1; i>=0; i--) buf.put((byte) (c >>> (8*i)));
+      else putVarint(buf, c);
+    }
+    return buf.array();
+  }
+
+  //same as above for BigInteger numbers (ex. an RSAKey's)
+  public static byte[] encode(int numLetters, int k, BigInteger[] numbers,
+    BigInteger modulus){
+    int width = Math.max(1, (modulus.subtract(BigInteger.ONE).bitLength() + 7) / 8);
+    long varBytes = 0;
+    for (BigInteger c : numbers) varBytes += Math.max(1, (c.bitLength() + 6) / 7);
+    boolean fixed = (long) width * numbers.length <= varBytes;
+    ByteBuffer buf = header(fixed, numLetters, k, width,
+      fixed ? (long) width * numbers.length : varBytes);
+    for (BigInteger c : numbers){
+      if (fixed) {
+        byte[] b = c.toByteArray(); //big endian, maybe with an extra sign byte
+        int len = Math.min(b.length, width);
+        for (int i=len; i<width; i++) buf.put((byte) 0);
+        buf.put(b, b.length - len, len);
+      }
+      else {
+        int bits = c.bitLength();
+        do {
+          int low = c.intValue() & 0x7F;
+          c = c.shiftRight(7);
+          bits -= 7;
+          buf.put((byte) (bits > 0 ? low | 0x80 : low));
+        } while (bits > 0);
+      }
+    }
+    return buf.array();
+  }
+
+  //helper: a buffer with the header written and room for the numbers
+  private static ByteBuffer header(boolean fixed, int numLetters, int k, int width,
+    long numberBytes){
+    int size = 1 + varintLength(numLetters) + varintLength(k) +
+      (fixed ? varintLength(width) : 0);
+    ByteBuffer buf = ByteBuffer.allocate((int) (size + numberBytes));
+    buf.put(fixed ? FIXED : VARINT);
+    putVarint(buf, numLetters);
+    putVarint(buf, k);
+    if (fixed) putVarint(buf, width);
+    return buf;
+  }
+
+  //LEB128 helpers (for values >= 0)--------------------------------------------
+  public static int varintLength(long v){
+    return Math.max(1, (64 - Long.numberOfLeadingZeros(v) + 6) / 7);
+  }
+
+  public static void putVarint(ByteBuffer buf, long v){
+    while ((v & ~0x7FL) != 0){
+      buf.put((byte) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    buf.put((byte) v);
+  }
+
+  public static long getVarint(ByteBuffer buf){
+    long v = 0;
+    int b, shift = 0;
+    do {
+      b = buf.get();
+      if (shift < 64) v |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return v;
+  }
+  //end LEB128 helpers----------------------------------------------------------
+
+  public static void main(String[] args){
+    long[] small = {0, 1, 127, 128, 300, 16384};
+    byte[] b = encode(small.length, 1, small, 1L << 40);
+    ResidueCodec in = reader(b);
+    System.out.print(b.length + " bytes (format " + b[0] + "):");
+    while (in.hasNext()) System.out.print(" " + in.nextLong());
+    System.out.println();
+  }
+
+}//end class
@@ -0,0 +1,201 @@
+/*ExpCipher and RSACipher (one number per letter) only ever encipher the 26
+letters, so for a fixed key there are only 26 numbers that can come out.
+A ResidueTable works them out once, when the key is first used:
+  - forward: each letter's C = P^e (mod q), already as text for the output
+  - reverse: C back to its letter, as an array indexed by C when the modulus
+    is small, or otherwise a little open addressing hash table (64 slots for
+    26 numbers, so a lookup almost never has to look at a second slot)
+Then enciphering and deciphering a message are just table lookups, with no
+powers at all. Deciphering also reads the numbers straight out of the text
+instead of splitting it into Strings and parsing them.
+
+A number that isn't in the table (ie the ciphertext was changed) is still
+deciphered the long way, P = C^d, so the results are the same as without
+the table. Tables for an RSAKey keep the numbers as text, since they are
+hundreds of digits long.*/
+
+import java.math.BigInteger;
+
+public class ResidueTable{
+
+  //biggest modulus that gets a plain array for the reverse table (16KB)
+  private static final int ARRAY_MOD = 1 << 12;
+  //slots in the open addressing table (a power of 2, at least twice the letters)
+  private static final int SLOTS = 64;
+
+  private final int size;
+  private final String[] text; //each letter's number, as text
+  private final int[] forward; //each letter's number (int keys)
+  private final BigInteger[] bigForward; //each letter's number (RSAKey)
+  //int keys: the modulus and decipher exponent, and reverse or the slots
+  private final int modulus, d;
+  private final int[] reverse, slotKeys;
+  //RSAKey tables: the key and the slots (keyed by the number as text)
+  private final RSAKey key;
+  private final String[] slotText;
+  private final int[] slotVals;
+
+  /*the table for C = P^e, P = C^d (mod modulus), for the letters 0 to size-1
+  (ExpCipher: modulus q, RSACipher: modulus n)*/
+  public ResidueTable(int myModulus, int e, int myD, int mySize){
+    size = mySize;
+    modulus = myModulus;
+    d = myD;
+    key = null;
+    slotText = null;
+    bigForward = null;
+    text = new String[size];
+    forward = new int[size];
+    //same two powers for every letter (see ExponentPlan.java)
+    ExponentPlan encipher = new ExponentPlan(e, modulus),
+      decipher = new ExponentPlan(d, modulus);
+    for (int i=0; i<size; i++){
+      forward[i] = encipher.pow(i);
+      text[i] = Integer.toString(forward[i]);
+    }
+    //the reverse is C^d, not just i, so it matches deciphering the long way
+    //(even for a bad key where two letters have the same number)
+    if (modulus <= ARRAY_MOD) {
+      reverse = new int[modulus];
+      java.util.Arrays.fill(reverse, -1);
+      for (int i=0; i<size; i++)
+        reverse[forward[i]] = decipher.pow(forward[i]);
+      slotKeys = null;
+      slotVals = null;
+    }
+    else {
+      reverse = null;
+      slotKeys = new int[SLOTS];
+      slotVals = new int[SLOTS];
+      java.util.Arrays.fill(slotKeys, -1);
+      for (int i=0; i<size; i++){
+        int s = slot(forward[i]);
+        while (slotKeys[s] != -1 && slotKeys[s] != forward[i]) s = (s+1) & (SLOTS-1);
+        slotKeys[s] = forward[i];
+        slotVals[s] = decipher.pow(forward[i]);
+      }
+    }
+  }
+
+  //the table for an RSAKey, for the letters 0 to size-1
+  public ResidueTable(RSAKey myKey, int mySize){
+    size = mySize;
+    key = myKey;
+    modulus = 0;
+    d = 0;
+    reverse = null;
+    slotKeys = null;
+    forward = null;
+    text = new String[size];
+    bigForward = new BigInteger[size];
+    slotText = new String[SLOTS];
+    slotVals = new int[SLOTS];
+    for (int i=0; i<size; i++){
+      bigForward[i] = key.encipher(BigInteger.valueOf(i));
+      text[i] = bigForward[i].toString();
+      int s = slot(text[i], 0, text[i].length());
+      while (slotText[s] != null && !slotText[s].equals(text[i])) s = (s+1) & (SLOTS-1);
+      slotText[s] = text[i];
+      slotVals[s] = i;
+    }
+  }
+
+  //helpers: the first slot to look in for a number (or its text)
+  private static int slot(int c){
+    return (c * 0x9E3779B9) >>> 26; //top 6 bits, since SLOTS = 2^6
+  }
+  private static int slot(CharSequence s, int from, int to){
+    int h = 0;
+    for (int i=from; i<to; i++) h = 31*h + s.charAt(i);
+    return slot(h);
+  }
+
+  //getters---------------------------------------------------------------------
+  public int size(){return size;}
+  //letter's number, as text
+  public String numberText(int letter){return text[letter];}
+  //letter's number (int keys, or bigNumber for an RSAKey)
+  public int number(int letter){return forward[letter];}
+  public BigInteger bigNumber(int letter){return bigForward[letter];}
+  //end getters-----------------------------------------------------------------
+
+  //the letter for the number c (int keys), ie c^d (mod modulus)
+  public int letterOf(long c){
+    if (c >= 0 && c < modulus) {
+      int C = (int) c;
+      if (reverse != null) {
+        if (reverse[C] >= 0) return reverse[C];
+      }
+      else {
+        for (int s=slot(C); slotKeys[s] != -1; s = (s+1) & (SLOTS-1))
+          if (slotKeys[s] == C) return slotVals[s];
+      }
+    }
+    //not one of the 26, so do it the long way
+    return Functions.modPower((int) Math.floorMod(c, (long) modulus), d, modulus);
+  }
+
+  //the letter for the number written in s from from to to (RSAKey tables)
+  public int letterOf(CharSequence s, int from, int to){
+    for (int i=slot(s, from, to); slotText[i] != null; i = (i+1) & (SLOTS-1)){
+      String t = slotText[i];
+      if (t.length() == to-from && sameDigits(t, s, from)) return slotVals[i];
+    }
+    return key.decipher(new BigInteger(s.subSequence(from, to).toString())).intValue();
+  }
+
+  //the letter for the number c (RSAKey tables); 26 equals() calls are still
+  //much quicker than one CRT decipher
+  public int letterOf(BigInteger c){
+    for (int i=0; i<size; i++) if (bigForward[i].equals(c)) return i;
+    return key.decipher(c).intValue();
+  }
+
+  //helper: true if s from from starts with all of t (no substring needed)
+  private static boolean sameDigits(String t, CharSequence s, int from){
+    for (int j=0; j<t.length(); j++)
+      if (t.charAt(j) != s.charAt(from+j)) return false;
+    return true;
+  }
+
+  /*enciphers message one number per letter (each followed by a space), the
+  same format as ExpCipher/RSACipher.encipher. Skips anything not in letters*/
+  public String encipher(CharSequence message, Alphabet letters){
+    StringBuilder newMessage = new StringBuilder(message.length() * 4);
+    int len = message.length(), index;
+    for (int i=0; i<len; i++){
+      index = letters.indexOf(message.charAt(i));
+      if (index > -1) newMessage.append(text[index]).append(' ');
+    }
+    return newMessage.toString();
+  }
+
+  /*deciphers numbers separated by spaces (the format above) back to letters,
+  reading the digits in place*/
+  public String decipher(CharSequence cipherText, Alphabet letters){
+    StringBuilder newMessage = new StringBuilder(cipherText.length() / 2 + 1);
+    int len = cipherText.length(), i = 0;
+    while (i < len){
+      char ch = cipherText.charAt(i);
+      if (ch < '0' || ch > '9') {i++; continue;}
+      int start = i;
+      long c = 0;
+      while (i < len && (ch = cipherText.charAt(i)) >= '0' && ch <= '9') {
+        if (key == null) c = Math.min(c*10 + (ch - '0'), Long.MAX_VALUE / 10);
+        i++;
+      }
+      int letter = (key == null) ? letterOf(c) : letterOf(cipherText, start, i);
+      newMessage.append(letters.charAtMod(letter));
+    }
+    return newMessage.toString();
+  }
+
+  public static void main(String[] args){
+    String message = Functions.fileToString("frankensteinCh1.txt");
+    ResidueTable t = new ResidueTable(61, 17, InverseTable.inverse(17, 60), 26);
+    String c = t.encipher(message, Alphabet.ENGLISH);
+    System.out.println(c.substring(0, 60) + "...\n" +
+      t.decipher(c, Alphabet.ENGLISH).substring(0, 60) + "...");
+  }
+
+}//end class
@@ -0,0 +1,106 @@
+/*One guess from CaesarCipher's guess and check section: the message with a
+certain shift undone. Nothing is deciphered when a candidate is made. Its
+score only looks at a short sample from the start of the message, and the
+full text is only made if someone asks for it (getText), or streamed
+straight to a Writer a buffer at a time (writeTo), so trying 100 shifts on a
+big file doesn't make 100 copies of it.
+
+The score is the chi-squared statistic of the sample's letters against
+English (see FrequencyAnalysis.chiSquared) divided by the number of letters
+in the sample, so it doesn't depend on the length of the message. English
+text usually scores below 0.5; wrong shifts are usually well above 1.*/
+
+import java.io.IOException;
+import java.io.Writer;
+
+public class ShiftCandidate{
+
+  //number of chars at the start of the message used for the score
+  public static final int SAMPLE_SIZE = 2000;
+  //chars shifted per write in writeTo
+  private static final int CHUNK = 8192;
+
+  private final String message;
+  private final int shift;
+  private final boolean alpha;
+  private final int[] sampleCounts; //letter counts of the (enciphered) sample
+  private double score = -1; //not scored yet
+  private String text; //not made yet
+
+  /*the candidate for undoing "shift" on the message, with the alpha mod 26
+  shift or the general (ASCII) shift. sampleCounts are the letter counts of the
+  sample of the message, shared by all the alpha candidates (null is fine)*/
+  ShiftCandidate(String myMessage, int myShift, boolean myAlpha,
+    int[] mySampleCounts){
+    message = myMessage;
+    shift = myShift;
+    alpha = myAlpha;
+    sampleCounts = mySampleCounts;
+  }
+
+  //getters---------------------------------------------------------------------
+  public int getShift(){return shift;}
+  public boolean isAlpha(){return alpha;}
+
+  //the score of this candidate (see above), worked out the first time
+  public double getScore(){
+    if (score < 0) score = computeScore();
+    return score;
+  }
+
+  //the whole deciphered message; made the first time it is asked for
+  public String getText(){
+    if (text == null) {
+      if (alpha) text = AffineTransformation.applyTransformation(message, 1,
+        -shift, true);
+      else text = CaesarCipher.generalShift(message, -shift);
+    }
+    return text;
+  }
+  //end getters-----------------------------------------------------------------
+
+  private double computeScore(){
+    int[] counts;
+    if (alpha && sampleCounts != null) {
+      //undoing shift i moves ciphertext letter p+i to p, so no shifting needed
+      counts = new int[sampleCounts.length];
+      for (int p=0; p<counts.length; p++)
+        counts[p] = sampleCounts[Math.floorMod(p + shift, counts.length)];
+    }
+    else {//shift the sample and count its letters
+      int len = Math.min(message.length(), SAMPLE_SIZE);
+      char[] buf = new char[len];
+      message.getChars(0, len, buf, 0);
+      if (alpha) new SubstitutionTable(1, -shift).applyInto(buf, buf, true);
+      else CaesarCipher.generalShiftInto(buf, 0, len, buf, 0, -shift);
+      counts = FrequencyAnalysis.letterCounts(java.nio.CharBuffer.wrap(buf));
+    }
+
+    int total = 0;
+    for (int i=0; i<counts.length; i++) total = total + counts[i];
+    if (total == 0) return Double.MAX_VALUE; //no letters, can't be English
+    return FrequencyAnalysis.chiSquared(counts) / total;
+  }
+
+  /*writes the deciphered message to w one buffer at a time, without making
+  the whole String (unless getText already made it)*/
+  public void writeTo(Writer w) throws IOException{
+    if (text != null) {w.write(text); return;}
+
+    int len = message.length(), n;
+    char[] buf = new char[Math.min(CHUNK, Math.max(len, 1))];
+    SubstitutionTable table = alpha ? new SubstitutionTable(1, -shift) : null;
+    for (int i=0; i<len; i=i+buf.length){
+      n = Math.min(buf.length, len-i);
+      message.getChars(i, i+n, buf, 0);
+      if (alpha) n = table.applyInto(buf, 0, n, buf, 0, true);
+      else CaesarCipher.generalShiftInto(buf, 0, n, buf, 0, -shift);
+      w.write(buf, 0, n);
+    }
+  }
+
+  public String toString(){
+    return "shift: " + shift + ", score: " + String.format("%.3f", getScore());
+  }
+
+}//end class
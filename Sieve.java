@@ -0,0 +1,178 @@
+/*A table of number theory values for every integer from 0 up to some limit,
+made once with a linear sieve (every composite is crossed off exactly once,
+by its smallest prime factor). After that, primality, the smallest prime
+factor, and phi are all O(1) array lookups, so checking thousands of
+(p, q, e) candidates never factors anything twice.
+
+For numbers past the limit (up to limit^2) there are segmented versions that
+sieve one range at a time with the table's primes, ex. primesInRange and
+phiRange, so big ranges don't need a giant table.*/
+
+public class Sieve{
+
+  //the table used by Functions.isPrime and Functions.phiOfN
+  public static final int SHARED_LIMIT = 1 << 20;
+
+  private final int limit;
+  private final int[] spf, phi, primes; //smallest prime factor, phi, primes<=limit
+  private final int[] primeCount; //primeCount[i] = num of primes <= i
+
+  //constructor; sieves every integer in [0, limit]
+  public Sieve(int myLimit){
+    limit = Math.max(myLimit, 2);
+    spf = new int[limit+1];
+    phi = new int[limit+1];
+    primeCount = new int[limit+1];
+    //there are always fewer than 1.26*n/ln(n) primes up to n (n>=17)
+    int[] found = new int[(int) (1.26*limit/Math.log(limit)) + 8];
+    int count = 0, p, m;
+
+    phi[1] = 1;
+    for (int i=2; i<=limit; i++){
+      if (spf[i]==0){//nobody crossed i off, so i is prime
+        spf[i] = i;
+        phi[i] = i-1;
+        found[count] = i;
+        count++;
+      }
+      //cross off i*p for every prime p <= spf(i); each composite gets hit once
+      for (int j=0; j<count; j++){
+        p = found[j];
+        if (p > spf[i] || (long) i*p > limit) break;
+        m = i*p;
+        spf[m] = p;
+        //phi(i*p) = phi(i)*p if p divides i, otherwise phi(i)*(p-1)
+        if (p == spf[i]) phi[m] = phi[i]*p;
+        else phi[m] = phi[i]*(p-1);
+      }//end for
+      primeCount[i] = count;
+    }//end for
+
+    primes = new int[count];
+    System.arraycopy(found, 0, primes, 0, count);
+  }
+
+  //lazy holder so the shared table is only made the first time it is used
+  private static class Shared{
+    static final Sieve TABLE = new Sieve(SHARED_LIMIT);
+  }
+
+  //returns the shared table (sieved up to SHARED_LIMIT)
+  public static Sieve shared(){return Shared.TABLE;}
+
+  //getters & lookups (all O(1))-----------------------------------------------
+  public int getLimit(){return limit;}
+  public boolean inRange(long n){return n >= 0 && n <= limit;}
+  public boolean isPrime(int n){return n >= 2 && spf[n] == n;}
+  //smallest prime factor of n; 0 for n<2
+  public int smallestPrimeFactor(int n){return spf[n];}
+  //phi(n), the number of integers from 1 to n relatively prime to n
+  public int phi(int n){return phi[n];}
+  //number of primes <= n
+  public int primeCount(int n){return n < 0 ? 0 : primeCount[n];}
+  //the i-th prime (0-indexed), so prime(0)=2
+  public int prime(int i){return primes[i];}
+  public int numPrimes(){return primes.length;}
+  //end lookups----------------------------------------------------------------
+
+  //bulk range queries---------------------------------------------------------
+
+  /*returns the primes in [lo, hi] in order. Inside the table this is just
+  a copy; past the table it sieves the range with the table's primes, which
+  works as long as hi <= limit^2*/
+  public int[] primesInRange(int lo, int hi){
+    lo = Math.max(lo, 2);
+    if (hi < lo) return new int[0];
+
+    if (hi <= limit){//already known, just copy the slice
+      int start = primeCount[lo-1], end = primeCount[hi];
+      int[] res = new int[end-start];
+      System.arraycopy(primes, start, res, 0, end-start);
+      return res;
+    }
+
+    if ((long) limit*limit < hi){
+      System.out.println("Warning: " + hi + " is too large for a table of size "
+        + limit + ". Only primes up to " + limit + " are returned.");
+      return primesInRange(lo, limit);
+    }
+
+    //segmented sieve of Eratosthenes over [lo, hi]
+    int len = hi-lo+1, count = 0;
+    boolean[] composite = new boolean[len];
+    for (int j=0; j<primes.length; j++){
+      long p = primes[j];
+      if (p*p > hi) break;
+      //first multiple of p in the range, but never p itself
+      long start = Math.max(p*p, ((lo + p - 1) / p) * p);
+      for (long k=start; k<=hi; k=k+p) composite[(int) (k-lo)] = true;
+    }
+    for (int i=0; i<len; i++) if (!composite[i]) count++;
+
+    int[] res = new int[count];
+    count = 0;
+    for (int i=0; i<len; i++){
+      if (!composite[i]) {res[count] = lo+i; count++;}
+    }
+    return res;
+  }
+
+  /*returns phi(n) for every n in [lo, hi] (res[0] = phi(lo)). Works for
+  hi <= limit^2, by dividing out the table's primes one segment at a time*/
+  public long[] phiRange(long lo, long hi){
+    lo = Math.max(lo, 1);
+    if (hi < lo) return new long[0];
+    if ((double) limit*limit < hi){
+      System.out.println("Warning: " + hi + " is too large for a table of size "
+        + limit + ".");
+      return new long[0];
+    }
+
+    int len = (int) (hi-lo+1);
+    long[] rest = new long[len], res = new long[len];
+    for (int i=0; i<len; i++) {rest[i] = lo+i; res[i] = lo+i;}
+
+    for (int j=0; j<primes.length; j++){
+      long p = primes[j];
+      if (p*p > hi) break;
+      for (long k=((lo + p - 1) / p) * p; k<=hi; k=k+p){
+        int i = (int) (k-lo);
+        res[i] = res[i] / p * (p-1);
+        while (rest[i] % p == 0) rest[i] = rest[i] / p;
+      }
+    }
+    //whatever is left over is one prime bigger than sqrt(hi)
+    for (int i=0; i<len; i++){
+      if (rest[i] > 1) res[i] = res[i] / rest[i] * (rest[i]-1);
+    }
+    return res;
+  }
+
+  /*returns the prime factors of n (with repeats, smallest first) by
+  following the smallest prime factor table. n must be in the table*/
+  public int[] factor(int n){
+    int[] buf = new int[32]; //2^31 is the most factors an int can have
+    int count = 0;
+    while (n > 1){
+      buf[count] = spf[n];
+      n = n / spf[n];
+      count++;
+    }
+    int[] res = new int[count];
+    System.arraycopy(buf, 0, res, 0, count);
+    return res;
+  }
+  //end bulk range queries-----------------------------------------------------
+
+  public static void main(String[] args){
+    long start = System.nanoTime();
+    Sieve s = shared();
+    System.out.println("Sieved to " + s.getLimit() + " in " +
+      (System.nanoTime()-start)/1000000 + "ms, " + s.numPrimes() + " primes");
+    System.out.println("phi(360)=" + s.phi(360) + ", spf(221)=" +
+      s.smallestPrimeFactor(221) + ", isPrime(65537)=" + s.isPrime(65537));
+    System.out.println(java.util.Arrays.toString(
+      s.primesInRange(2147483000, 2147483647)));
+  }
+
+}//end class
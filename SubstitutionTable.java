@@ -0,0 +1,116 @@
+/*An affine key C = aP + k (mod m) compiled into a substitution table.
+Since the key only ever sends each letter to one other letter, the whole
+cipher is a permutation of the alphabet, so it can be worked out once and
+then applied to a message with one table lookup per char:
+
+  dst[i] = table[src[i]]
+
+The table covers every Latin-1 char (letters of either case go to the
+cipher letter, everything else to its uppercase, like applyTransformation
+always did); anything past Latin-1 goes through the Alphabet instead.
+
+applyInto works on char arrays the caller owns, so enciphering a message
+over and over with the same key does no allocation at all.*/
+
+public class SubstitutionTable{
+
+  private final Alphabet alphabet;
+  private final int scalar, shift;
+  private final char[] perm; //alphabet position -> cipher symbol
+  private final char[] latin = new char[256]; //Latin-1 char -> output char
+  private final boolean[] isSymbol = new boolean[256]; //Latin-1 char in alphabet?
+
+  //constructor for the English alphabet
+  public SubstitutionTable(int myScalar, int myShift){
+    this(myScalar, myShift, Alphabet.ENGLISH);
+  }
+
+  //compiles the key C = scalar*P + shift (mod alphabet.size())
+  public SubstitutionTable(int myScalar, int myShift, Alphabet myAlphabet){
+    alphabet = myAlphabet;
+    int mod = alphabet.size();
+    scalar = Math.floorMod(myScalar, mod);
+    shift = Math.floorMod(myShift, mod);
+
+    perm = new char[mod];
+    for (int i=0; i<mod; i++) perm[i] = alphabet.charAt((scalar*i + shift) % mod);
+
+    int index;
+    for (int c=0; c<256; c++){
+      index = alphabet.indexOf((char) c);
+      isSymbol[c] = index >= 0;
+      if (index >= 0) latin[c] = perm[index];
+      else latin[c] = Character.toUpperCase((char) c);
+    }
+  }
+
+  //getters---------------------------------------------------------------------
+  public int getScalar(){return scalar;}
+  public int getShift(){return shift;}
+  public Alphabet getAlphabet(){return alphabet;}
+  //cipher symbol for the symbol at the given position
+  public char get(int index){return perm[index];}
+  //end getters-----------------------------------------------------------------
+
+  /*substitutes len chars of src (starting at srcOff) into dst (starting at
+  dstOff) and returns the number of chars written. Without punctuation, only
+  alphabet symbols are written, so dst might get fewer than len chars.
+  dst needs room for len chars; src and dst can be the same array*/
+  public int applyInto(char[] src, int srcOff, int len, char[] dst, int dstOff,
+    boolean includePunctuation){
+
+    int out = dstOff, end = srcOff + len, index;
+    char c;
+
+    if (includePunctuation){//every char is written, the common case
+      for (int i=srcOff; i<end; i++){
+        c = src[i];
+        if (c < 256) dst[out] = latin[c];
+        else {
+          index = alphabet.indexOf(c);
+          dst[out] = (index >= 0) ? perm[index] : Character.toUpperCase(c);
+        }
+        out++;
+      }//end for
+    }
+    else {//letters only
+      for (int i=srcOff; i<end; i++){
+        c = src[i];
+        if (c < 256) {
+          if (isSymbol[c]) {dst[out] = latin[c]; out++;}
+        }
+        else {
+          index = alphabet.indexOf(c);
+          if (index >= 0) {dst[out] = perm[index]; out++;}
+        }
+      }//end for
+    }//end else
+    return out - dstOff;
+  }
+
+  //same as above, for whole arrays
+  public int applyInto(char[] src, char[] dst, boolean includePunctuation){
+    return applyInto(src, 0, src.length, dst, 0, includePunctuation);
+  }
+
+  //applies the table to a String in one pass (one buffer, one new String)
+  public String apply(String message, boolean includePunctuation){
+    char[] buf = message.toCharArray();
+    int len = applyInto(buf, 0, buf.length, buf, 0, includePunctuation);
+    return new String(buf, 0, len);
+  }
+
+  public static void main(String[] args){
+    String text = Functions.fileToString("frankensteinLONG.txt");
+    char[] src = text.toCharArray(), dst = new char[src.length];
+    SubstitutionTable key = new SubstitutionTable(5, 8);
+    for (int i=0; i<200; i++) key.applyInto(src, dst, true); //warm up
+
+    long start = System.nanoTime();
+    int len = key.applyInto(src, dst, true);
+    System.out.println("Enciphered " + len + " chars in " +
+      (System.nanoTime()-start)/1000 + " us");
+    System.out.println(new String(dst, 0, 80));
+  }
+
+}//end class
@@ -0,0 +1,151 @@
+/*A read-only view of a text file that is mapped into memory (NIO) one
+"window" at a time and decoded into chars chunk by chunk.
+Iterating over a TextFile gives CharBuffer chunks in file order, so a whole
+corpus can be read in linear time while only one window of bytes and one
+buffer of chars are held at once. Functions.fileToString is built on top
+of this, and streaming code (ex. the Vigenere streams, and the letter counts
+in FrequencyAnalysis and AffineKeySearch) can use the chunks directly
+without ever making one giant String.
+
+IMPORTANT: the iterator reuses the same CharBuffer for every chunk, so a
+chunk is only valid until the next call to next(). Copy it if you need it.*/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class TextFile implements Iterable<CharBuffer>{
+
+  //1MB windows are big enough to amortize the mapping, small enough for heap
+  public static final int DEFAULT_WINDOW = 1 << 20;
+
+  private final Path path;
+  private final int window;
+  private final Charset charset;
+
+  //constructor; uses the default window size and the platform charset
+  //(the same charset Scanner used in the old fileToString)
+  public TextFile(String fileName){
+    this(fileName, DEFAULT_WINDOW, Charset.defaultCharset());
+  }
+
+  //constructor with a custom window size (in bytes) and charset
+  public TextFile(String fileName, int windowSize, Charset cs){
+    path = Paths.get(fileName);
+    //a window needs room for at least one full multi-byte char
+    window = Math.max(windowSize, 16);
+    charset = cs;
+  }
+
+  //getters-------------------------------------------------------------------
+  public boolean exists(){return Files.isRegularFile(path);}
+  public Charset getCharset(){return charset;}
+  public int getWindow(){return window;}
+  //size of the file in BYTES (not chars); 0 if the file can't be read
+  public long size(){
+    try {return Files.size(path);}
+    catch (IOException e) {return 0;}
+  }
+  //end getters---------------------------------------------------------------
+
+  /*returns an iterator over the decoded chunks of the file. If the file can't
+  be opened, prints a warning and returns an empty iterator (no exceptions,
+  same as the rest of the project)*/
+  public Iterator<CharBuffer> iterator(){
+    try {
+      return new ChunkIterator(FileChannel.open(path, StandardOpenOption.READ));
+    } catch (IOException e) {
+      System.out.println("File not found! :(");
+      return new ChunkIterator(null);
+    }
+  }
+
+  /*maps the file one window at a time and decodes each window into the same
+  reusable CharBuffer. A multi-byte char that is split between two windows is
+  left undecoded and picked up again at the start of the next window*/
+  private class ChunkIterator implements Iterator<CharBuffer>{
+
+    private FileChannel channel;
+    private long position = 0, size = 0;
+    private final CharsetDecoder decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars =
+      CharBuffer.allocate((int) (window * (double) decoder.maxCharsPerByte()) + 2);
+    private boolean ready = false, flushed = false;
+
+    ChunkIterator(FileChannel fc){
+      channel = fc;
+      if (fc != null){
+        try {size = fc.size();}
+        catch (IOException e) {close();}
+      }
+    }
+
+    public boolean hasNext(){
+      if (!ready) ready = fill();
+      return ready;
+    }
+
+    public CharBuffer next(){
+      if (!hasNext()) throw new NoSuchElementException();
+      ready = false;
+      return chars;
+    }
+
+    //decodes the next window into chars; returns false when there is nothing
+    //left (and closes the channel)
+    private boolean fill(){
+      if (channel == null) return false;
+      chars.clear();
+      try {
+        while (chars.position() == 0 && !flushed){
+          if (position < size){
+            long len = Math.min(window, size-position);
+            ByteBuffer bytes =
+              channel.map(FileChannel.MapMode.READ_ONLY, position, len);
+            boolean last = position + len == size;
+            decoder.decode(bytes, chars, last);
+            //only advance by what was actually decoded (split chars stay)
+            position = position + bytes.position();
+          }
+          else {//end of file, let the decoder emit anything it held back
+            if (size > 0) decoder.flush(chars);
+            flushed = true;
+          }
+        }//end while
+      } catch (IOException e) {
+        System.out.println("An error occurred while reading " + path);
+        flushed = true;
+      }
+      chars.flip();
+      if (!chars.hasRemaining()) {close(); return false;}
+      return true;
+    }
+
+    private void close(){
+      try {if (channel != null) channel.close();}
+      catch (IOException e) {}//nothing useful to do, we're done anyway
+      channel = null;
+    }
+  }//end ChunkIterator
+
+  public static void main(String[] args){
+    TextFile file = new TextFile("frankensteinLONG.txt");
+    long chars = 0, chunks = 0;
+    for (CharBuffer chunk : file) {chars = chars + chunk.remaining(); chunks++;}
+    System.out.println(file.size() + " bytes, " + chars + " chars, " + chunks +
+      " chunk(s)");
+  }
+
+}//end class
@@ -14,14 +14,23 @@ public class VigenereCipher{
   private boolean enciphered = false;
   private final String decipherFailed =
     "Decipher failed! Your message is not enciphered!",
-    encipherFailed = "Encipher failed! Your message is already enciphered!",
-    letters = Functions.getLetters();
-  private int mod = 26;
+    encipherFailed = "Encipher failed! Your message is already enciphered!";
+  //table lookups instead of scanning a String for every letter (ignores case)
+  private final Alphabet letters;
+  private final int mod;
 
   //constructor
   public VigenereCipher(String myMessage, String myKeyword){
+    this(myMessage, myKeyword, Alphabet.ENGLISH);
+  }
+
+  //constructor for other alphabets (ex. with space and period); the mod is
+  //the size of the alphabet
+  public VigenereCipher(String myMessage, String myKeyword, Alphabet alphabet){
     message = myMessage;
     keyword = myKeyword;
+    letters = alphabet;
+    mod = alphabet.size();
     this.processKeyword();
   }
 
@@ -84,45 +93,51 @@ public class VigenereCipher{
 
   /*applies viginere en/de-cipher to the object's message variable, depending
   on cipher status, and returns the string (does NOT change message or
-  enciphered variables)*/
+  enciphered variables). The whole message is one chunk of a VigenereStream,
+  so this and the streaming version always agree*/
   private String applyTransformation(boolean includePunctuation){
-    //handle special case of no letters in keyword, which is the trivial case
-    if (keywordVals.length==0) return message;
-
-    //moving on to actual cipher!
-    char c; //placeholders
-    //index is mod val of current char, keyIndex is index in keyword
-    //shift value is +- keywordVals[j], depending on enciphered
-    int index, keyIndex = 0, shiftVal;
-    //capitalization is a social construct, makes cipher easier to calculate
-    message = message.toUpperCase();
-    String newMessage = "";
-
-    for (int i=0; i<message.length(); i++){
-      c = message.charAt(i);
-      index = letters.indexOf(c);
-      //if alpha, apply shift
-      if (index > -1){
-        //adjust for enciphered or deciphered;
-        if (enciphered) shiftVal = -keywordVals[keyIndex];
-        else shiftVal = keywordVals[keyIndex];
-        //do mod calculations here for negative correction below
-        shiftVal = (shiftVal + index) % mod;
-        //mod is terrible and doens't calculate least POSITIVE residue
-        if (shiftVal<0) shiftVal=shiftVal+mod;//fix to POSITIVE
-        //add to new message!
-        newMessage = newMessage + letters.charAt(shiftVal);
-        //loop keyIndex
-        if (keyIndex<keywordVals.length-1) keyIndex++;
-        else keyIndex = 0;
-      }
-      //otherwise, include punctuation
-      else if (includePunctuation) newMessage = newMessage + c;
-    }//end for
-
-    return newMessage;
+    //capitalization is a social construct, so letters.indexOf ignores it
+    return new VigenereStream(keyword, enciphered, includePunctuation, letters)
+      .transform(message);
   }//end applyTransformation
 
+  /*a VigenereStream that enciphers text with this keyword a chunk at a time,
+  for messages too big to hold in a String (ex. a file or a socket)*/
+  public VigenereStream encipherStream(boolean includePunctuation){
+    return new VigenereStream(keyword, false, includePunctuation, letters);
+  }
+
+  //a VigenereStream that deciphers text with this keyword (with punctuation)
+  public VigenereStream decipherStream(){
+    return new VigenereStream(keyword, true, true, letters);
+  }
+
+  /*byte version of applyTransformation for big ASCII buffers: en/de-ciphers
+  src[0...len) into dst depending on cipher status and returns the number of
+  bytes written. Does NOT change message or enciphered. Uses SIMD (see
+  ByteKernels) when the Vector API is available, but that only knows the
+  English alphabet, so other alphabets go through VigenereStream instead*/
+  public int applyTransformation(byte[] src, int len, byte[] dst,
+    boolean includePunctuation){
+    if (!letters.getSymbols().equals(Alphabet.ENGLISH.getSymbols())) {
+      //one char per byte (ISO-8859-1), so nothing else changes on the way back
+      char[] chars = new String(src, 0, len,
+        java.nio.charset.StandardCharsets.ISO_8859_1).toCharArray();
+      int n = new VigenereStream(keyword, enciphered, includePunctuation, letters)
+        .transform(chars, 0, chars.length, chars, 0);
+      for (int i=0; i<n; i++) dst[i] = (byte) chars[i];
+      return n;
+    }
+    int[] key = new int[keywordVals.length];
+    for (int i=0; i<key.length; i++){
+      //deciphering adds -k, which is 26-k (mod 26)
+      if (enciphered) key[i] = (mod - keywordVals[i]) % mod;
+      else key[i] = keywordVals[i];
+    }
+    return ByteKernels.vigenere(src, 0, len, dst, 0, key, new int[1],
+      includePunctuation);
+  }
+
   /*applies Viginere Cipher and returns the transformed message
   if the message is not already enciphered; otherwise returns the OG message*/
   public String encipher(boolean includePunctuation){
@@ -0,0 +1,143 @@
+/*Recovers the keyword of a VigenereCipher ciphertext with no help at all.
+
+Step 1, the key length. Two classic tests are used:
+  - index of coincidence (IC): the chance that two letters picked from a text
+    are the same. English is about 0.066, random letters about 0.038. If the
+    letters are split into L columns (every L-th letter) and L is the key
+    length, every column is a Caesar cipher of English and has English IC.
+    Multiples of the key length look just as good, so the smallest good L
+    wins.
+  - Kasiski: a repeated trigram in the ciphertext is usually the same
+    plaintext under the same part of the key, so the distance between
+    repeats is a multiple of the key length. Used to pick between lengths
+    whose IC is about the same.
+Every key length is tested in parallel, and each one's column histograms are
+made in one pass over the letters.
+
+Step 2, the key letters. Each column is a Caesar cipher, so its shift is the
+one whose chi-squared against English is smallest (FrequencyAnalysis).*/
+
+import java.util.stream.IntStream;
+
+public class VigenereKeySearch{
+
+  private static final int MOD = 26;
+  //default longest keyword tried
+  public static final int DEFAULT_MAX_LENGTH = 24;
+  //lengths with IC at least this fraction of the best IC are "good"
+  private static final double IC_TOLERANCE = 0.9;
+
+  /*returns the most likely keyword for the ciphertext, trying keyword lengths
+  up to DEFAULT_MAX_LENGTH*/
+  public static String recoverKey(String cipherText){
+    return recoverKey(cipherText, DEFAULT_MAX_LENGTH);
+  }
+
+  //same as above, trying keyword lengths 1 to maxLength
+  public static String recoverKey(String cipherText, int maxLength){
+    int[] letters = Alphabet.ENGLISH.indices(cipherText);
+    if (letters.length == 0) {
+      System.out.println("There are no letters to analyze.");
+      return "";
+    }
+    int len = keyLength(letters, maxLength);
+    return solveColumns(columnCounts(letters, len));
+  }
+
+  /*returns the most likely key length (1 to maxLength) for the letters of a
+  ciphertext (as positions, see Alphabet.indices)*/
+  public static int keyLength(int[] letters, int maxLength){
+    maxLength = Math.max(1, Math.min(maxLength, letters.length / 2));
+    double[] ic = new double[maxLength+1];
+    //each key length is independent, so do them all in parallel
+    IntStream.rangeClosed(1, maxLength).parallel()
+      .forEach(L -> ic[L] = averageIC(columnCounts(letters, L)));
+    int[] kasiski = kasiskiCounts(letters, maxLength);
+
+    double best = 0;
+    int bestKasiski = 0;
+    for (int L=1; L<=maxLength; L++) best = Math.max(best, ic[L]);
+    for (int L=1; L<=maxLength; L++){
+      if (ic[L] >= IC_TOLERANCE*best) bestKasiski = Math.max(bestKasiski, kasiski[L]);
+    }
+    //smallest good length that also has (most of) the Kasiski support
+    for (int L=1; L<=maxLength; L++){
+      if (ic[L] >= IC_TOLERANCE*best && 2*kasiski[L] >= bestKasiski) return L;
+    }
+    return 1; //not reachable: the best IC length always passes
+  }
+
+  /*makes the letter counts of every column for key length L in one pass:
+  counts[c][x] = number of times letter x is in column c (every L-th letter
+  starting at c)*/
+  public static int[][] columnCounts(int[] letters, int L){
+    int[][] counts = new int[L][MOD];
+    int col = 0;
+    for (int i=0; i<letters.length; i++){
+      counts[col][letters[i]]++;
+      col++;
+      if (col == L) col = 0;
+    }
+    return counts;
+  }
+
+  //average index of coincidence of the columns
+  private static double averageIC(int[][] counts){
+    double sum = 0;
+    for (int c=0; c<counts.length; c++){
+      long n = 0, pairs = 0;
+      for (int x=0; x<MOD; x++){
+        n = n + counts[c][x];
+        pairs = pairs + (long) counts[c][x] * (counts[c][x]-1);
+      }
+      if (n > 1) sum = sum + (double) pairs / (n * (n-1));
+    }
+    return sum / counts.length;
+  }
+
+  /*Kasiski examination: for every repeated trigram, the distance back to its
+  last appearance is counted toward every L (up to maxLength) dividing it.
+  res[L] = number of repeat distances that are multiples of L*/
+  private static int[] kasiskiCounts(int[] letters, int maxLength){
+    int[] res = new int[maxLength+1];
+    int[] last = new int[MOD*MOD*MOD]; //last position of each trigram, +1
+    for (int i=0; i+2<letters.length; i++){
+      int tri = (letters[i]*MOD + letters[i+1])*MOD + letters[i+2];
+      if (last[tri] > 0) {
+        int dist = i - (last[tri]-1);
+        for (int L=1; L<=maxLength; L++) if (dist % L == 0) res[L]++;
+      }
+      last[tri] = i+1;
+    }
+    return res;
+  }
+
+  //solves each column as a Caesar cipher and returns the keyword
+  private static String solveColumns(int[][] counts){
+    char[] key = new char[counts.length];
+    IntStream.range(0, counts.length).parallel().forEach(c -> {
+      int bestShift = 0;
+      double best = Double.MAX_VALUE, chi;
+      for (int k=0; k<MOD; k++){
+        //a letter p enciphered with key letter k is p+k
+        chi = FrequencyAnalysis.chiSquared(counts[c], 1, k);
+        if (chi < best) {best = chi; bestShift = k;}
+      }
+      key[c] = Alphabet.ENGLISH.charAt(bestShift);
+    });
+    return new String(key);
+  }
+
+  public static void main(String[] args){
+    String keyword = (args.length > 0) ? args[0] : "VICTOR";
+    VigenereCipher vc = VigenereCipher.VCFromText("frankensteinLONG.txt", keyword);
+    String secret = vc.encipher(true);
+
+    recoverKey(secret); //warm up
+    long start = System.nanoTime();
+    String key = recoverKey(secret);
+    System.out.println("Recovered keyword " + key + " in " +
+      (System.nanoTime()-start)/1000 + " us");
+  }
+
+}//end class
@@ -0,0 +1,185 @@
+/*A VigenereCipher that works on a stream of text one chunk at a time instead
+of one giant String. The only thing a Vigenere cipher has to remember from
+one letter to the next is where it is in the keyword, so that position (and
+the number of letters seen so far) is kept here between calls. Feeding a
+message through in any number of chunks of any size gives exactly the same
+output as doing it all at once, and only one chunk is ever in memory, so it
+works on sockets and on files bigger than the heap.
+
+Same rules as VigenereCipher: letters come out as uppercase cipher letters,
+punctuation comes out uppercase (or is dropped), and a keyword with no
+letters leaves the text alone.*/
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class VigenereStream{
+
+  //chars transformed per read in the Reader/Writer version
+  private static final int CHUNK = 8192;
+
+  private final Alphabet letters;
+  private final int[] shifts; //shift of each keyword letter (negated to decipher)
+  private final boolean includePunctuation;
+  private int keyIndex = 0; //position in the keyword of the next letter
+  private long letterCount = 0; //letters transformed so far
+
+  //constructor for the English alphabet
+  public VigenereStream(String keyword, boolean decipher,
+    boolean includePunctuation){
+    this(keyword, decipher, includePunctuation, Alphabet.ENGLISH);
+  }
+
+  /*constructor; enciphers if decipher is false. Non-letters in the keyword
+  are ignored, like VigenereCipher*/
+  public VigenereStream(String keyword, boolean decipher,
+    boolean myIncludePunctuation, Alphabet alphabet){
+    letters = alphabet;
+    includePunctuation = myIncludePunctuation;
+    int mod = alphabet.size(), count = 0, index;
+    int[] vals = new int[keyword.length()];
+    for (int i=0; i<keyword.length(); i++){
+      index = letters.indexOf(keyword.charAt(i));
+      if (index > -1) {
+        //deciphering adds -k, which is mod-k
+        vals[count] = decipher ? (mod - index) % mod : index;
+        count++;
+      }
+    }
+    shifts = java.util.Arrays.copyOf(vals, count);
+  }
+
+  //getters---------------------------------------------------------------------
+  public int getKeyIndex(){return keyIndex;}
+  public long getLetterCount(){return letterCount;}
+  public boolean getIncludePunctuation(){return includePunctuation;}
+  //end getters-----------------------------------------------------------------
+
+  //starts over at the beginning of the keyword, for a new message
+  public void reset(){
+    keyIndex = 0;
+    letterCount = 0;
+  }
+
+  /*transforms len chars of src (from srcOff) into dst (from dstOff), picking
+  up the keyword where the last call stopped. Returns the number of chars
+  written (fewer than len if punctuation is dropped). dst needs room for len
+  chars; src and dst can be the same array*/
+  public int transform(char[] src, int srcOff, int len, char[] dst, int dstOff){
+    if (shifts.length == 0) {//trivial keyword, text is left alone
+      System.arraycopy(src, srcOff, dst, dstOff, len);
+      return len;
+    }
+    int mod = letters.size(), out = dstOff, k = keyIndex, index, seen = 0;
+    char c;
+    for (int i=srcOff; i<srcOff+len; i++){
+      c = src[i];
+      index = letters.indexOf(c);
+      if (index > -1) {
+        index = index + shifts[k];
+        if (index >= mod) index = index - mod;
+        dst[out] = letters.charAt(index);
+        out++;
+        seen++;
+        k++;
+        if (k == shifts.length) k = 0;
+      }
+      else if (includePunctuation) {dst[out] = Character.toUpperCase(c); out++;}
+    }
+    letterCount = letterCount + seen;
+    keyIndex = k;
+    return out - dstOff;
+  }
+
+  /*transforms as much of in as fits in out (both buffers move forward).
+  in is read from its position to its limit, like any NIO buffer*/
+  public void transform(CharBuffer in, CharBuffer out){
+    char[] buf = new char[Math.min(CHUNK, Math.max(in.remaining(), 1))];
+    int n;
+    while (in.hasRemaining() && out.hasRemaining()){
+      //at most out.remaining() chars, so the output is sure to fit
+      n = Math.min(Math.min(buf.length, in.remaining()), out.remaining());
+      in.get(buf, 0, n);
+      out.put(buf, 0, transform(buf, 0, n, buf, 0));
+    }
+  }
+
+  //transforms a whole String (one chunk); handy for small messages
+  public String transform(String message){
+    char[] buf = message.toCharArray();
+    return new String(buf, 0, transform(buf, 0, buf.length, buf, 0));
+  }
+
+  /*reads in to the end, writing the transformed text to out a buffer at a
+  time; returns the number of chars read. Neither stream is closed*/
+  public long transform(Reader in, Writer out) throws IOException{
+    char[] buf = new char[CHUNK];
+    long total = 0;
+    int n;
+    while ((n = in.read(buf)) != -1){
+      out.write(buf, 0, transform(buf, 0, n, buf, 0));
+      total = total + n;
+    }
+    out.flush();
+    return total;
+  }
+
+  /*transforms the file inName into the file outName, one TextFile chunk at a
+  time (so the file can be bigger than the heap). Returns the number of chars
+  read, or -1 (with a message) if something went wrong*/
+  public long transformFile(String inName, String outName){
+    TextFile file = new TextFile(inName);
+    if (!file.exists()) {
+      System.out.println("File not found! :(");
+      return -1;
+    }
+    long total = 0;
+    char[] buf = new char[CHUNK];
+    int n;
+    //an OutputStreamWriter replaces chars the charset can't write (like the
+    //reader does), where newBufferedWriter would stop with an exception
+    try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(
+      Files.newOutputStream(Paths.get(outName)), file.getCharset()))){
+      for (CharBuffer chunk : file){
+        total = total + chunk.remaining();
+        while (chunk.hasRemaining()){
+          n = Math.min(buf.length, chunk.remaining());
+          chunk.get(buf, 0, n);
+          w.write(buf, 0, transform(buf, 0, n, buf, 0));
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("An error occurred while writing " + outName);
+      return -1;
+    }
+    return total;
+  }
+
+  //the output goes to temp files, so the demo doesn't leave files in the repo
+  public static void main(String[] args){
+    String keyword = (args.length > 0) ? args[0] : "VICTOR";
+    String enciphered, deciphered;
+    try {
+      enciphered = Files.createTempFile("frankensteinVigenere", ".txt").toString();
+      deciphered = Files.createTempFile("frankensteinVigenereDeciphered", ".txt").toString();
+    }
+    catch (IOException e) {
+      System.out.println("Could not make the temp files: " + e.getMessage());
+      return;
+    }
+    VigenereStream enc = new VigenereStream(keyword, false, true);
+    long n = enc.transformFile("frankensteinLONG.txt", enciphered);
+    System.out.println("Enciphered " + n + " chars (" + enc.getLetterCount() +
+      " letters) into " + enciphered + ", keyword position now " + enc.getKeyIndex());
+    VigenereStream dec = new VigenereStream(keyword, true, true);
+    dec.transformFile(enciphered, deciphered);
+    System.out.println("Deciphered into " + deciphered);
+  }
+
+}//end class
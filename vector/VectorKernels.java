@@ -0,0 +1,157 @@
+/*SIMD versions of the ByteKernels, using the incubating Vector API
+(jdk.incubator.vector). Each step loads a whole vector of bytes (32 or 64 on
+AVX2/AVX-512), works out which lanes are letters with a mask, and only
+changes those lanes; everything else passes through (or is dropped).
+
+Never call this class directly: ByteKernels checks that the Vector API is
+there and falls back to its scalar code when it isn't. It lives in its own
+folder so the plain "javac *.java" build still works; to use it, compile it
+next to the other classes and run with the module, ex.
+  javac --add-modules jdk.incubator.vector -d . vector/VectorKernels.java
+  java --add-modules jdk.incubator.vector AffineTransformation*/
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorKernels{
+
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+  private static final int VLEN = SPECIES.length(), MOD = 26;
+
+  //which lanes of v are ASCII letters; idx gets each letter's position
+  private static VectorMask<Byte> letters(ByteVector idx){
+    return idx.compare(VectorOperators.UNSIGNED_LT, (byte) MOD);
+  }
+
+  //a letter's position: clear bit 5 (a-z -> A-Z) and subtract 'A'
+  private static ByteVector positions(ByteVector v){
+    return v.and((byte) 0xDF).sub((byte) 'A');
+  }
+
+  //copies only the lanes of res that are set in mask to dst[out...] in order
+  //(returns the new out). The Vector API in JDK 17 has no compress, so
+  //this walks the mask bits
+  private static int compact(ByteVector res, VectorMask<Byte> mask, byte[] tmp,
+    byte[] dst, int out){
+    res.intoArray(tmp, 0);
+    long bits = mask.toLong();
+    while (bits != 0){
+      dst[out] = tmp[Long.numberOfTrailingZeros(bits)];
+      out++;
+      bits = bits & (bits-1);
+    }
+    return out;
+  }
+
+  //vector version of ByteKernels.substitute (same arguments and result)
+  public static int substitute(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, byte[] table, boolean includePunctuation){
+
+    //the 26 letter table is split into vector sized pieces; with 32+ lanes
+    //that's just one piece and one lane shuffle per vector
+    int numPieces = (MOD + VLEN - 1) / VLEN;
+    byte[] padded = java.util.Arrays.copyOf(table, numPieces * VLEN),
+      tmp = new byte[VLEN];
+    ByteVector[] pieces = new ByteVector[numPieces];
+    for (int p=0; p<numPieces; p++)
+      pieces[p] = ByteVector.fromArray(SPECIES, padded, p*VLEN);
+
+    int i = 0, out = dstOff, bound = SPECIES.loopBound(len);
+    for (; i<bound; i=i+VLEN){
+      ByteVector v = ByteVector.fromArray(SPECIES, src, srcOff+i),
+        idx = positions(v), res = ByteVector.zero(SPECIES);
+      VectorMask<Byte> isLetter = letters(idx);
+
+      for (int p=0; p<numPieces; p++){//table lookup, piece by piece
+        ByteVector local = idx.sub((byte) (p*VLEN));
+        VectorMask<Byte> m = isLetter.and(
+          local.compare(VectorOperators.UNSIGNED_LT, (byte) VLEN));
+        res = res.or(local.selectFrom(pieces[p], m)); //unset lanes are 0
+      }
+
+      if (includePunctuation) {
+        v.blend(res, isLetter).intoArray(dst, out);
+        out = out + VLEN;
+      }
+      else if (isLetter.allTrue()) {
+        res.intoArray(dst, out);
+        out = out + VLEN;
+      }
+      else out = compact(res, isLetter, tmp, dst, out);
+    }//end for
+
+    //leftover bytes that don't fill a vector
+    out = out + ByteKernels.scalarSubstitute(src, srcOff+i, len-i, dst, out,
+      table, includePunctuation);
+    return out - dstOff;
+  }
+
+  //vector version of ByteKernels.vigenere (same arguments and result)
+  public static int vigenere(byte[] src, int srcOff, int len, byte[] dst,
+    int dstOff, int[] key, int[] keyIndex, boolean includePunctuation){
+
+    //the keyword repeated out to one vector past its end, so the key for
+    //VLEN letters starting at keyword position k is just keyExt[k...k+VLEN)
+    int kl = key.length;
+    byte[] keyExt = new byte[kl + VLEN], tmp = new byte[VLEN];
+    for (int j=0; j<keyExt.length; j++) keyExt[j] = (byte) key[j % kl];
+
+    int i = 0, out = dstOff, k = keyIndex[0], bound = SPECIES.loopBound(len);
+
+    if (!includePunctuation){
+      //pass 1: keep just the letters (as they are) at the front of dst
+      for (; i<bound; i=i+VLEN){
+        ByteVector v = ByteVector.fromArray(SPECIES, src, srcOff+i);
+        VectorMask<Byte> isLetter = letters(positions(v));
+        if (isLetter.allTrue()) {v.intoArray(dst, out); out = out + VLEN;}
+        else out = compact(v, isLetter, tmp, dst, out);
+      }
+      for (; i<len; i++){
+        if (ByteKernels.letterIndex(src[srcOff+i]) >= 0) {
+          dst[out] = src[srcOff+i];
+          out++;
+        }
+      }
+      //pass 2: now every byte is a letter, so every lane gets the key
+      int n = out - dstOff, end = dstOff + SPECIES.loopBound(n), j = dstOff;
+      for (; j<end; j=j+VLEN){
+        shift(ByteVector.fromArray(SPECIES, dst, j), keyExt, k).intoArray(dst, j);
+        k = (k + VLEN) % kl;
+      }
+      keyIndex[0] = k;
+      ByteKernels.scalarVigenere(dst, j, dstOff+n-j, dst, j, key, keyIndex, true);
+      return n;
+    }
+
+    for (; i<bound; i=i+VLEN){
+      ByteVector v = ByteVector.fromArray(SPECIES, src, srcOff+i);
+      if (letters(positions(v)).allTrue()){//a whole vector of letters
+        shift(v, keyExt, k).intoArray(dst, out);
+        out = out + VLEN;
+        k = (k + VLEN) % kl;
+      }
+      else {//punctuation changes where the key lines up, do it one at a time
+        keyIndex[0] = k;
+        out = out + ByteKernels.scalarVigenere(src, srcOff+i, VLEN, dst, out,
+          key, keyIndex, true);
+        k = keyIndex[0];
+      }
+    }//end for
+
+    keyIndex[0] = k;
+    out = out + ByteKernels.scalarVigenere(src, srcOff+i, len-i, dst, out, key,
+      keyIndex, true);
+    return out - dstOff;
+  }
+
+  //adds the key (from keyExt at k) to a vector of letters (mod 26)
+  private static ByteVector shift(ByteVector v, byte[] keyExt, int k){
+    ByteVector s = positions(v).add(ByteVector.fromArray(SPECIES, keyExt, k));
+    s = s.lanewise(VectorOperators.SUB, (byte) MOD,
+      s.compare(VectorOperators.GE, (byte) MOD));
+    return s.add((byte) 'A');
+  }
+
+}//end class